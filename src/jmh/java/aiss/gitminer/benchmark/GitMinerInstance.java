@@ -0,0 +1,56 @@
+package aiss.gitminer.benchmark;
+
+import aiss.gitminer.GitMinerApplication;
+import aiss.gitminer.service.ProjectBulkLoader;
+import aiss.gitminer.service.SearchIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The application without its web server, on its own in-memory database, so that a benchmark
+ * only depends on the code and the generated data.
+ */
+final class GitMinerInstance {
+
+    private GitMinerInstance() {
+    }
+
+    static ConfigurableApplicationContext start(String database) {
+        return new SpringApplicationBuilder(GitMinerApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties("spring.datasource.url=jdbc:h2:mem:" + database,
+                        "spring.jpa.show-sql=false",
+                        "gitminer.search.index-dir=",
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+    /**
+     * Imports a synthetic project through the bulk loader and waits until the search index has
+     * caught up, so that indexing does not run in the background of the measurements.
+     */
+    static void load(ConfigurableApplicationContext app, String projectId, int rows) throws Exception {
+        Path file = Files.createTempFile("gitminer-" + projectId, ".ndjson");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                SyntheticData.writeNdjson(projectId, rows, app.getBean(ObjectMapper.class), out);
+            }
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                app.getBean(ProjectBulkLoader.class).load(in);
+            }
+            app.getBean(SearchIndex.class).rebuild();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package aiss.gitminer.benchmark;
+
+import aiss.gitminer.exception.UserConflictException;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.model.User;
+import aiss.gitminer.repository.ProjectRepository;
+import aiss.gitminer.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving a new project with its commits, issues and comments in one transaction. The users exist
+ * already, as when a miner sends a project whose authors were seen before. The projects saved
+ * during an iteration are removed after it, so every iteration starts from the same tables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProjectSaveBenchmarks {
+
+    @Param({"100", "1000"})
+    public int rows;
+
+    private ConfigurableApplicationContext app;
+    private ProjectRepository projectRepository;
+    private UserRepository userRepository;
+    private TransactionTemplate transaction;
+    private final Map<String, String> userIds = new HashMap<>();
+    private int saved;
+
+    @Setup(Level.Trial)
+    public void setUp() throws UserConflictException {
+        app = GitMinerInstance.start("save-" + rows);
+        projectRepository = app.getBean(ProjectRepository.class);
+        userRepository = app.getBean(UserRepository.class);
+        transaction = app.getBean(TransactionTemplate.class);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < SyntheticData.USERS; i++) {
+            users.add(new User(SyntheticData.username(i), "User " + i, null, null));
+        }
+        userRepository.upsertAll(users).forEach((username, user) -> userIds.put(username, user.getId()));
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeProjects() {
+        transaction.executeWithoutResult(status -> projectRepository.deleteAll());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.close();
+    }
+
+    @Benchmark
+    public Project save() {
+        String id = "save-" + saved++;
+        return transaction.execute(status -> projectRepository.save(SyntheticData.project(id, rows,
+                username -> userRepository.getReferenceById(userIds.get(username)))));
+    }
+}
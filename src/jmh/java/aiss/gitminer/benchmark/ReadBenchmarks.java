@@ -0,0 +1,98 @@
+package aiss.gitminer.benchmark;
+
+import aiss.gitminer.controller.IssueController;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.repository.CommentRepository;
+import aiss.gitminer.repository.CommitRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads against one project of the given number of rows.
+ *
+ * The comments of an issue are read through a cacheable query, as in production, so after the
+ * warm-up that benchmark mostly measures the second-level cache. The other reads do not use it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReadBenchmarks {
+
+    private static final String PROJECT = "bench";
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext app;
+    private CommentRepository commentRepository;
+    private CommitRepository commitRepository;
+    private IssueController issueController;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        app = GitMinerInstance.start("read-" + rows);
+        GitMinerInstance.load(app, PROJECT, rows);
+        commentRepository = app.getBean(CommentRepository.class);
+        commitRepository = app.getBean(CommitRepository.class);
+        issueController = app.getBean(IssueController.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.close();
+    }
+
+    /**
+     * The duplicate check of a new comment, on a column without an index.
+     */
+    @Benchmark
+    public Optional<Comment> findCommentByBodyAndCreatedAt() {
+        int comment = random.nextInt(SyntheticData.comments(rows));
+        return commentRepository.findByBodyAndCreatedAt(SyntheticData.commentBody(PROJECT, comment),
+                SyntheticData.commentCreatedAt(comment));
+    }
+
+    /**
+     * One of the last pages of the commits by offset, with the count of the page.
+     */
+    @Benchmark
+    public List<Commit> findAllCommitsAtDeepOffset() {
+        int pages = SyntheticData.commits(rows) / PAGE_SIZE;
+        int page = pages - 1 - random.nextInt(Math.max(1, pages / 10));
+        return commitRepository.findAll(PageRequest.of(page, PAGE_SIZE, Sort.by("id"))).getContent();
+    }
+
+    @Benchmark
+    public List<Comment> findIssueComments() throws Exception {
+        String issue = SyntheticData.issueId(PROJECT, random.nextInt(SyntheticData.issues(rows)));
+        return issueController.findIssueComments(issue, null, 0, 5,
+                new ServletWebRequest(new MockHttpServletRequest()));
+    }
+}
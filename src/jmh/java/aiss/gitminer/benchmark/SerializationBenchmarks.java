@@ -0,0 +1,82 @@
+package aiss.gitminer.benchmark;
+
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and reading the project and issue graphs of the API in each format the API negotiates,
+ * with the mapper settings Spring Boot applies, without a database. The size of each payload is
+ * printed once per trial, to compare with the times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SerializationBenchmarks {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private ObjectMapper objectMapper;
+    private Project project;
+    private byte[] projectBytes;
+    private Issue issue;
+    private byte[] issueBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = switch (format) {
+            case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+            default -> Jackson2ObjectMapperBuilder.json().build();
+        };
+        project = SyntheticData.project("serialized", rows, username -> new User(username, "User", null, null));
+        projectBytes = objectMapper.writeValueAsBytes(project);
+        issue = project.getIssues().get(0);
+        issueBytes = objectMapper.writeValueAsBytes(issue);
+        System.out.printf("%n%s: project of %d rows in %d bytes, issue in %d bytes%n",
+                format, rows, projectBytes.length, issueBytes.length);
+    }
+
+    @Benchmark
+    public byte[] writeProject() throws IOException {
+        return objectMapper.writeValueAsBytes(project);
+    }
+
+    @Benchmark
+    public Project readProject() throws IOException {
+        return objectMapper.readValue(projectBytes, Project.class);
+    }
+
+    @Benchmark
+    public byte[] writeIssue() throws IOException {
+        return objectMapper.writeValueAsBytes(issue);
+    }
+
+    @Benchmark
+    public Issue readIssue() throws IOException {
+        return objectMapper.readValue(issueBytes, Issue.class);
+    }
+}
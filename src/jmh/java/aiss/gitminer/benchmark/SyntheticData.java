@@ -0,0 +1,179 @@
+package aiss.gitminer.benchmark;
+
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.model.User;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+/**
+ * Projects of a given number of rows, always the same for the same id and size so that runs can
+ * be compared. Out of every 10 rows 5 are commits, 1 an issue and 4 the comments of that issue,
+ * written by a pool of {@value #USERS} users.
+ *
+ * Row i of each kind only depends on i, so a benchmark can look up an existing comment by
+ * {@link #commentBody(String, int)} and {@link #commentCreatedAt(int)} without keeping the data.
+ */
+public final class SyntheticData {
+
+    public static final int USERS = 100;
+    public static final int COMMENTS_PER_ISSUE = 4;
+
+    private static final Instant START = Instant.parse("2020-01-01T00:00:00Z");
+    private static final String[] WORDS = {"fix", "add", "remove", "parser", "cache", "test", "build", "docs",
+            "crash", "when", "the", "project", "is", "empty", "refactor", "update", "dependency", "login", "page",
+            "timeout", "null", "pointer", "in", "commit", "issue", "comment", "miner", "rate", "limit", "retry"};
+    private static final String[] LABELS = {"bug", "enhancement", "documentation", "question", "wontfix"};
+
+    private SyntheticData() {
+    }
+
+    public static int issues(int rows) {
+        return rows / 10;
+    }
+
+    public static int comments(int rows) {
+        return issues(rows) * COMMENTS_PER_ISSUE;
+    }
+
+    public static int commits(int rows) {
+        return rows - issues(rows) - comments(rows);
+    }
+
+    public static String username(int user) {
+        return "user-" + user;
+    }
+
+    public static String issueId(String projectId, int issue) {
+        return projectId + "-issue-" + issue;
+    }
+
+    public static String commentBody(String projectId, int comment) {
+        return text(new SplittableRandom(comment * 31L + 3), 8, 40) + " (" + projectId + " #" + comment + ")";
+    }
+
+    public static Instant commentCreatedAt(int comment) {
+        return START.plus(Duration.ofMinutes(comment * 7L));
+    }
+
+    /**
+     * The whole project as one object graph, with the comments under their issues.
+     *
+     * @param users user of each username, such as a reference to a row that already exists
+     */
+    public static Project project(String projectId, int rows, Function<String, User> users) {
+        List<Commit> commits = new ArrayList<>();
+        for (int i = 0; i < commits(rows); i++) {
+            commits.add(commit(projectId, i));
+        }
+        List<Issue> issues = new ArrayList<>();
+        for (int i = 0; i < issues(rows); i++) {
+            Issue issue = issue(projectId, i, users);
+            List<Comment> comments = new ArrayList<>();
+            for (int c = i * COMMENTS_PER_ISSUE; c < (i + 1) * COMMENTS_PER_ISSUE; c++) {
+                comments.add(comment(projectId, c, users));
+            }
+            issue.setComments(comments);
+            issues.add(issue);
+        }
+        return new Project(projectId, "Project " + projectId, "https://example.com/" + projectId, commits, issues);
+    }
+
+    /**
+     * The same project in the NDJSON format of the bulk import, with one line per user, commit,
+     * issue and comment.
+     */
+    public static void writeNdjson(String projectId, int rows, ObjectMapper objectMapper, OutputStream out)
+            throws IOException {
+        Function<String, User> users = username -> new User(username, null, null, null);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            line(generator, objectMapper, "project",
+                    new Project(projectId, "Project " + projectId, "https://example.com/" + projectId, null, null));
+            for (int i = 0; i < USERS; i++) {
+                User user = new User(username(i), "User " + i, null, "https://example.com/" + username(i));
+                line(generator, objectMapper, "user", user);
+            }
+            for (int i = 0; i < commits(rows); i++) {
+                line(generator, objectMapper, "commit", commit(projectId, i));
+            }
+            for (int i = 0; i < issues(rows); i++) {
+                Issue issue = issue(projectId, i, users);
+                issue.setComments(new ArrayList<>());
+                line(generator, objectMapper, "issue", issue);
+            }
+            for (int c = 0; c < comments(rows); c++) {
+                ObjectNode node = objectMapper.valueToTree(comment(projectId, c, users));
+                node.put("type", "comment");
+                node.put("issue_id", issueId(projectId, c / COMMENTS_PER_ISSUE));
+                generator.writeTree(node);
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    private static void line(JsonGenerator generator, ObjectMapper objectMapper, String type, Object value)
+            throws IOException {
+        ObjectNode node = objectMapper.valueToTree(value);
+        node.put("type", type);
+        generator.writeTree(node);
+        generator.writeRaw('\n');
+    }
+
+    private static Commit commit(String projectId, int commit) {
+        SplittableRandom random = new SplittableRandom(commit * 31L + 1);
+        Commit result = new Commit(text(random, 3, 10), text(random, 5, 60), "Author " + random.nextInt(USERS),
+                "author@example.com", START.plus(Duration.ofMinutes(commit * 3L)),
+                "https://example.com/" + projectId + "/commit/" + commit);
+        result.setId(projectId + "-commit-" + commit);
+        return result;
+    }
+
+    private static Issue issue(String projectId, int issue, Function<String, User> users) {
+        SplittableRandom random = new SplittableRandom(issue * 31L + 2);
+        Issue result = new Issue();
+        result.setId(issueId(projectId, issue));
+        result.setTitle(text(random, 3, 12));
+        result.setDescription(text(random, 10, 120));
+        Instant createdAt = START.plus(Duration.ofMinutes(issue * 28L));
+        result.setCreatedAt(createdAt);
+        result.setUpdatedAt(createdAt);
+        // Two thirds of the issues end up closed
+        if (random.nextInt(3) > 0) {
+            result.setState("closed");
+            result.setClosedAt(createdAt.plus(Duration.ofHours(1 + random.nextInt(24 * 30))));
+        } else {
+            result.setState("opened");
+        }
+        result.setLabels(new ArrayList<>(List.of(LABELS[random.nextInt(LABELS.length)])));
+        result.setAuthor(users.apply(username(random.nextInt(USERS))));
+        result.setVotes(random.nextInt(10));
+        return result;
+    }
+
+    private static Comment comment(String projectId, int comment, Function<String, User> users) {
+        SplittableRandom random = new SplittableRandom(comment * 31L + 4);
+        return new Comment(projectId + "-comment-" + comment, commentBody(projectId, comment),
+                users.apply(username(random.nextInt(USERS))), commentCreatedAt(comment), null);
+    }
+
+    private static String text(SplittableRandom random, int minWords, int maxWords) {
+        StringBuilder text = new StringBuilder();
+        for (int i = random.nextInt(minWords, maxWords + 1); i > 0; i--) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(i > 1 ? " " : "");
+        }
+        return text.toString();
+    }
+}
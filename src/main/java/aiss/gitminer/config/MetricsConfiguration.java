@@ -0,0 +1,84 @@
+package aiss.gitminer.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+
+/**
+ * Metrics served in the Prometheus format by /actuator/prometheus, on top of those of Spring Boot
+ * (request and repository timers, connection pool, Hibernate statistics and JVM).
+ *
+ * The request timer is also tagged by controller method and filters used, and RequestMetrics
+ * records the statements, entities and rows of each request with the same tags.
+ */
+@Configuration
+public class MetricsConfiguration implements WebMvcConfigurer {
+
+    private final RequestMetrics requestMetrics;
+    private final StatementTracker statementTracker;
+
+    public MetricsConfiguration(RequestMetrics requestMetrics, StatementTracker statementTracker) {
+        this.requestMetrics = requestMetrics;
+        this.statementTracker = statementTracker;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(statementTracker);
+        registry.addInterceptor(requestMetrics);
+    }
+
+    // The beans below are static: the registry applies them while it is created, before this
+    // configuration and the interceptor, which needs the registry, can be
+
+    @Bean
+    public static WebMvcTagsContributor handlerTagsContributor() {
+        return new WebMvcTagsContributor() {
+            @Override
+            public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                         Throwable exception) {
+                return RequestMetrics.handlerTags(request, handler);
+            }
+
+            @Override
+            public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+                return RequestMetrics.handlerTags(request, handler);
+            }
+        };
+    }
+
+    @Bean
+    public static HibernatePropertiesCustomizer requestMetricsCustomizer(StatementTracker statementTracker) {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, statementTracker);
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, StatementTracker.ExecutionListener.class.getName());
+            properties.put(AvailableSettings.INTERCEPTOR, new RequestMetrics.LoadInterceptor());
+        };
+    }
+
+    // Only with virtual threads, when the connection pool is behind a ConnectionLimiter
+    @Bean
+    public static MeterBinder connectionLimiterMetrics(DataSource dataSource) {
+        return registry -> {
+            if (dataSource instanceof ConnectionLimiter limiter) {
+                Gauge.builder("gitminer.db.permits.available", limiter, ConnectionLimiter::getAvailablePermits)
+                        .description("Connections a request thread can still take")
+                        .register(registry);
+                Gauge.builder("gitminer.db.permits.waiting", limiter, ConnectionLimiter::getWaitingThreads)
+                        .description("Request threads waiting for a connection")
+                        .register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,142 @@
+package aiss.gitminer.config;
+
+import aiss.gitminer.repository.ListFilters;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.type.Type;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+/**
+ * Statements executed, database time, entities loaded and rows returned by each request,
+ * recorded as distributions tagged like the request timer: by endpoint, controller method and
+ * filters used. The statements are counted by StatementTracker.
+ *
+ * The persistence context stays open for the whole request, so the Hibernate sessions of a
+ * request all run on its thread and count towards it. Sessions outside a request, such as those
+ * of the ingestion workers, are not counted.
+ */
+@ControllerAdvice
+public class RequestMetrics implements HandlerInterceptor, ResponseBodyAdvice<Object> {
+
+    private static final String COUNTS = RequestMetrics.class.getName() + ".counts";
+
+    private final MeterRegistry registry;
+
+    public RequestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Endpoint tags added to the request timer: the controller method and the names of the filters
+     * given, never their values, so that the number of series stays bounded.
+     */
+    static Tags handlerTags(HttpServletRequest request, Object handler) {
+        String method = handler instanceof HandlerMethod handlerMethod
+                ? handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName()
+                : "none";
+        String filters = Collections.list(request.getParameterNames()).stream()
+                .filter(ListFilters::isFilter)
+                .sorted()
+                .collect(Collectors.joining(","));
+        return Tags.of("handler", method, "filters", filters.isEmpty() ? "none" : filters);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(COUNTS, new Counts());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Counts counts = (Counts) request.getAttribute(COUNTS);
+        if (counts == null) {
+            return;
+        }
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Tags tags = Tags.of("uri", uri == null ? "UNKNOWN" : uri.toString(), "method", request.getMethod())
+                .and(handlerTags(request, handler));
+
+        StatementTracker.Statements statements = StatementTracker.current();
+        if (statements != null) {
+            summary("gitminer.request.statements", "SQL statements executed by a request", tags)
+                    .record(statements.getCount());
+            Timer.builder("gitminer.request.database").description("Time the database took to execute them")
+                    .tags(tags).register(registry).record(statements.getTime());
+        }
+        summary("gitminer.request.entities", "Entities loaded by a request", tags)
+                .record(counts.entities);
+        if (counts.rows >= 0) {
+            summary("gitminer.request.rows", "Elements of the list returned by a request", tags)
+                    .record(counts.rows);
+        }
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        Counts counts = current();
+        if (counts != null && body instanceof Collection<?> rows) {
+            counts.rows = rows.size();
+        }
+        return body;
+    }
+
+    private DistributionSummary summary(String name, String description, Tags tags) {
+        return DistributionSummary.builder(name).description(description).tags(tags).register(registry);
+    }
+
+    private static Counts current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes == null ? null : (Counts) attributes.getAttribute(COUNTS, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    // Only touched by the thread of the request
+    private static class Counts {
+        long entities;
+        long rows = -1;
+    }
+
+    /**
+     * Counts the entities read from the database, registered as the session factory interceptor.
+     */
+    public static class LoadInterceptor extends EmptyInterceptor {
+
+        @Override
+        public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+            Counts counts = current();
+            if (counts != null) {
+                counts.entities++;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package aiss.gitminer.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Most SQL statements and database time a request to the annotated handler may take before
+ * StatementTracker reports it. Without the annotation reads get the configured default budget
+ * (gitminer.sql.budget.*) and writes, whose cost grows with the payload, are not checked.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StatementBudget {
+
+    int DEFAULT = -1;
+    int UNLIMITED = Integer.MAX_VALUE;
+
+    int statements() default DEFAULT;
+
+    int millis() default DEFAULT;
+}
@@ -0,0 +1,193 @@
+package aiss.gitminer.config;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the SQL statements of each request and the time the database spends executing them,
+ * and logs the requests over their {@link StatementBudget} together with the shapes of their
+ * statements and how often each ran: an N+1 select shows up as one shape repeated once per row.
+ *
+ * With gitminer.sql.fail-over-budget, as in the tests, a request over its statement budget also
+ * fails once it is done. Every statement is logged at TRACE level, in place of spring.jpa.show-sql.
+ */
+@Component
+public class StatementTracker extends OncePerRequestFilter implements HandlerInterceptor, StatementInspector {
+
+    private static final Logger log = LoggerFactory.getLogger(StatementTracker.class);
+
+    private static final ThreadLocal<Statements> CURRENT = new ThreadLocal<>();
+    private static final Pattern SELECT_LIST = Pattern.compile("^select .+? from ", Pattern.CASE_INSENSITIVE);
+    private static final Pattern IN_LIST = Pattern.compile("in \\(\\?(?: ?, ?\\?)+\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final int LOGGED_SHAPES = 10;
+
+    @Value("${gitminer.sql.budget.statements:20}")
+    int defaultStatements;
+
+    @Value("${gitminer.sql.budget.time:500ms}")
+    Duration defaultTime;
+
+    @Value("${gitminer.sql.fail-over-budget:false}")
+    boolean failOverBudget;
+
+    /**
+     * Statements of the request on the current thread so far, null outside a request.
+     */
+    public static Statements current() {
+        return CURRENT.get();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Statements statements = new Statements();
+        CURRENT.set(statements);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            CURRENT.remove();
+        }
+        check(request, statements);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Statements statements = CURRENT.get();
+        if (statements != null && handler instanceof HandlerMethod handlerMethod) {
+            statements.handler = handlerMethod;
+        }
+        return true;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Statements statements = CURRENT.get();
+        if (statements != null) {
+            statements.count++;
+            statements.shapes.merge(shape(sql), 1, Integer::sum);
+        }
+        if (log.isTraceEnabled()) {
+            log.trace(sql);
+        }
+        return sql;
+    }
+
+    private void check(HttpServletRequest request, Statements statements) throws ServletException {
+        StatementBudget budget = statements.handler == null ? null
+                : statements.handler.getMethodAnnotation(StatementBudget.class);
+        if (budget == null && !request.getMethod().equals("GET")) {
+            return;
+        }
+        int maxStatements = budget == null || budget.statements() == StatementBudget.DEFAULT
+                ? defaultStatements : budget.statements();
+        long maxMillis = budget == null || budget.millis() == StatementBudget.DEFAULT
+                ? defaultTime.toMillis() : budget.millis();
+        long millis = statements.getTime().toMillis();
+        if (statements.count <= maxStatements && millis <= maxMillis) {
+            return;
+        }
+
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String shapes = statements.shapes.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(LOGGED_SHAPES)
+                .map(shape -> String.format("%n  %5d x %s", shape.getValue(), shape.getKey()))
+                .collect(Collectors.joining());
+        String message = String.format("%s %s ran %d statements in %d ms, over its budget of %s statements in %s ms:%s",
+                request.getMethod(), uri == null ? request.getRequestURI() : uri, statements.count, millis,
+                maxStatements == StatementBudget.UNLIMITED ? "unlimited" : maxStatements,
+                maxMillis == StatementBudget.UNLIMITED ? "unlimited" : maxMillis, shapes);
+        log.warn(message);
+        // The time depends on the machine, only the statements are reliable enough to fail on
+        if (failOverBudget && statements.count > maxStatements) {
+            throw new ServletException(message);
+        }
+    }
+
+    // The statement without its select list and with lists of parameters folded, which only differ in their length
+    static String shape(String sql) {
+        String shape = SPACES.matcher(sql.trim()).replaceAll(" ");
+        shape = SELECT_LIST.matcher(shape).replaceFirst("select ... from ");
+        return IN_LIST.matcher(shape).replaceAll("in (?...)");
+    }
+
+    /**
+     * Statements of one request. Only touched by the thread of the request.
+     */
+    public static class Statements {
+        private final Map<String, Integer> shapes = new HashMap<>();
+        private HandlerMethod handler;
+        private int count;
+        private long nanos;
+        private long started;
+
+        public int getCount() {
+            return count;
+        }
+
+        public Duration getTime() {
+            return Duration.ofNanos(nanos);
+        }
+    }
+
+    /**
+     * Measures the execution time of the statements, registered as an automatic session event listener.
+     */
+    public static class ExecutionListener extends BaseSessionEventListener {
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            started();
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            finished();
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            started();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            finished();
+        }
+
+        private static void started() {
+            Statements statements = CURRENT.get();
+            if (statements != null) {
+                statements.started = System.nanoTime();
+            }
+        }
+
+        private static void finished() {
+            Statements statements = CURRENT.get();
+            if (statements != null && statements.started != 0) {
+                statements.nanos += System.nanoTime() - statements.started;
+                statements.started = 0;
+            }
+        }
+    }
+}
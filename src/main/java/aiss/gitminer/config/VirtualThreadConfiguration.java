@@ -0,0 +1,71 @@
+package aiss.gitminer.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in (gitminer.threads.virtual=true) execution of every request on its own virtual thread.
+ *
+ * Requests mostly wait on JDBC, so a virtual thread per request removes the limit of the Tomcat
+ * pool without holding a platform thread per waiting request. The build targets Java 17, so the
+ * executor is looked up at runtime: on a JVM without virtual threads the platform pool is kept.
+ * The data source is wrapped in a ConnectionLimiter sized to the connection pool, so that the
+ * unbounded number of request threads queues in order for the database instead of flooding it.
+ */
+@Configuration
+@ConditionalOnProperty(name = "gitminer.threads.virtual", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfiguration.class);
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        Optional<ExecutorService> executor = virtualThreadExecutor();
+        if (executor.isEmpty()) {
+            log.warn("Virtual threads need Java 21 or later, requests stay on the platform thread pool");
+        }
+        return protocolHandler -> executor.ifPresent(protocolHandler::setExecutor);
+    }
+
+    @Bean
+    public static BeanPostProcessor connectionLimiterPostProcessor(
+            @Value("${gitminer.threads.db-permits:0}") int permits,
+            @Value("${gitminer.threads.db-wait:30s}") Duration wait) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource) || bean instanceof ConnectionLimiter) {
+                    return bean;
+                }
+                // Hikari properties are bound before initialization; an unset pool size means its default of 10
+                int size = permits;
+                if (size <= 0 && bean instanceof HikariDataSource hikari) {
+                    size = hikari.getMaximumPoolSize();
+                }
+                return new ConnectionLimiter((DataSource) bean, size > 0 ? size : 10, wait);
+            }
+        };
+    }
+
+    static Optional<ExecutorService> virtualThreadExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // Missing before Java 19, and a preview feature that has to be enabled until Java 21
+            return Optional.empty();
+        }
+    }
+}
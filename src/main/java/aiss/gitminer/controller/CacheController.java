@@ -0,0 +1,54 @@
+package aiss.gitminer.controller;
+
+import aiss.gitminer.dto.CacheRegionDto;
+import aiss.gitminer.service.ReadCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Tag(name = "Cache", description = "Second-level cache statistics and invalidation")
+@RestController
+@RequestMapping("/gitminer/cache")
+public class CacheController {
+
+    @Autowired
+    ReadCache readCache;
+
+    // GET http://localhost:8080/gitminer/cache
+    @Operation(
+            summary = "Retrieve the cache statistics",
+            description = "Get the hits, misses, puts and hit ratio of every cache region",
+            tags = { "cache", "get" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content =
+                    {@Content(schema = @Schema(implementation = CacheRegionDto.class),
+                            mediaType = "application/json")})
+    })
+    @GetMapping
+    public List<CacheRegionDto> statistics() {
+        return readCache.statistics();
+    }
+
+    // DELETE http://localhost:8080/gitminer/cache
+    @Operation(
+            summary = "Clear the caches",
+            description = "Evict every cache region and reset the statistics",
+            tags = { "cache", "delete" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", content = {@Content(schema = @Schema())})
+    })
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @DeleteMapping
+    public void clear() {
+        readCache.evictAll();
+        readCache.resetStatistics();
+    }
+}
@@ -1,8 +1,22 @@
 package aiss.gitminer.controller;
 
+import aiss.gitminer.dto.JobDto;
 import aiss.gitminer.exception.CommentNotFoundException;
+import aiss.gitminer.exception.IngestionQueueFullException;
+import aiss.gitminer.exception.InvalidCursorException;
+import aiss.gitminer.exception.InvalidFilterException;
+import aiss.gitminer.exception.UserConflictException;
 import aiss.gitminer.model.Comment;
 import aiss.gitminer.repository.CommentRepository;
+import aiss.gitminer.repository.ListFilters;
+import aiss.gitminer.repository.UserRepository;
+import aiss.gitminer.service.ActivityRollups;
+import aiss.gitminer.service.CommentFingerprintIndex;
+import aiss.gitminer.service.IngestionJob;
+import aiss.gitminer.service.IngestionQueue;
+import aiss.gitminer.service.KeysetPager;
+import aiss.gitminer.service.ResourceVersions;
+import aiss.gitminer.service.UserIdentityMap;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -11,13 +25,21 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Tag(name = "Comment", description = "Comment management API")
@@ -28,9 +50,27 @@ public class CommentController {
     @Autowired
     CommentRepository commentRepository;
 
+    @Autowired
+    CommentFingerprintIndex commentFingerprintIndex;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    KeysetPager keysetPager;
+
+    @Autowired
+    ResourceVersions resourceVersions;
+
+    @Autowired
+    IngestionQueue ingestionQueue;
+
+    @Autowired
+    ActivityRollups activityRollups;
+
     @Operation(
             summary = "Retrieve a list of all comments",
-            description = "Get a list of all comments",
+            description = "Get a list of all comments, filtered by name, author, issue, since and until; see ListFilters",
             tags = { "comments", "get" })
     @ApiResponses({
             @ApiResponse(responseCode = "200", content =
@@ -38,10 +78,26 @@ public class CommentController {
                             mediaType = "application/json")})
     })
     @GetMapping
-    public List<Comment> findAll (@RequestParam(required = false) String name,
-                                  @RequestParam(required = false) String order,
+    public List<Comment> findAll (@RequestParam(required = false) String order,
                                   @RequestParam(defaultValue = "0") int page,
-                                  @RequestParam(defaultValue = "5") int size) {
+                                  @RequestParam(defaultValue = "5") int size,
+                                  @Parameter(description = "cursor from the X-Next-Cursor header; pass it empty to start paging by cursor")
+                                  @RequestParam(required = false) String after,
+                                  @Parameter(description = "filters such as author=ann&issue=42&since=2023-01-01T00:00:00Z")
+                                  @RequestParam MultiValueMap<String, String> filters,
+                                  HttpServletResponse response)
+            throws InvalidCursorException, InvalidFilterException {
+        Specification<Comment> filter = ListFilters.COMMENTS.compile(filters, order);
+
+        if (after != null) {
+            Slice<Comment> sliceComments = keysetPager.findAll(Comment.class, filter, order, after, size);
+            String next = keysetPager.nextCursor(sliceComments, order);
+            if (next != null) {
+                response.setHeader(KeysetPager.NEXT_CURSOR_HEADER, next);
+            }
+            return sliceComments.getContent();
+        }
+
         Pageable paging;
 
         if (order != null) {
@@ -56,14 +112,7 @@ public class CommentController {
             paging = PageRequest.of(page, size);
         }
 
-        Page<Comment> pageComments;
-
-        if (name == null) {
-            pageComments = commentRepository.findAll(paging);
-        }
-        else {
-            pageComments = commentRepository.findByAuthor(name, paging);
-        }
+        Slice<Comment> pageComments = keysetPager.findAll(Comment.class, filter, paging);
         return pageComments.getContent();
     }
 
@@ -76,11 +125,17 @@ public class CommentController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", content =
                     {@Content(schema = @Schema(implementation = Comment.class),
-                            mediaType = "application/json")})
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping("/{id}")
     public Comment findById(@Parameter(description = "id of a comment to be searched")
-                            @PathVariable String id) throws CommentNotFoundException {
+                            @PathVariable String id,
+                            ServletWebRequest request) throws CommentNotFoundException {
+        ResourceVersions.Validator validator = resourceVersions.comment(id).orElseThrow(CommentNotFoundException::new);
+        if (resourceVersions.notModified(request, validator)) {
+            return null;
+        }
         Optional<Comment> foundComment = commentRepository.findById(id);
 
         if (!foundComment.isPresent()) {
@@ -100,13 +155,49 @@ public class CommentController {
                             mediaType = "application/json")})
     })
     @PostMapping
-    public Comment createComment(@RequestBody Comment comment) {
-        Optional<Comment> existing = commentRepository.findByBodyAndCreatedAt(
-                comment.getBody(),
-                comment.getCreatedAt()
-        );
+    public Comment createComment(@RequestBody Comment comment) throws UserConflictException {
+        String fingerprint = comment.contentFingerprint();
 
-        return existing.orElseGet(() -> commentRepository.save(comment));
+        if (commentFingerprintIndex.mightContain(fingerprint)) {
+            Optional<Comment> existing = commentRepository.findFirstByFingerprint(fingerprint);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+        }
+        new UserIdentityMap(userRepository).resolveComment(comment);
+        ActivityRollups.Change change = activityRollups.before(
+                new ActivityRollups.Change().comments(List.of(comment.getId())));
+        try {
+            Comment newComment = resourceVersions.saveComment(comment);
+            activityRollups.after(change);
+            return newComment;
+        } catch (DataIntegrityViolationException e) {
+            // Another request stored the same comment, under the same id, in the meantime
+            return commentRepository.findFirstByFingerprint(fingerprint).orElseThrow(() -> e);
+        }
+    }
+
+    @Operation(
+            summary = "Queue a new comment",
+            description = "Accepts a comment and creates it in the background; GET /gitminer/jobs/{id} reports its status, and what was stored once it is done",
+            tags = {"comments", "post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", content = {
+                    @Content(schema = @Schema(implementation = JobDto.class),
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "429", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping(params = "async=true")
+    public ResponseEntity<JobDto> createCommentAsync(@RequestBody Comment comment) throws IngestionQueueFullException {
+        IngestionJob job = ingestionQueue.submit("comment", Map.of("comments", 1),
+                running -> {
+                    Comment newComment = createComment(comment);
+                    // An identical comment already stored is returned instead of a new one
+                    running.stored("comments", newComment.getId().equals(comment.getId()) ? 1 : 0);
+                    return "/gitminer/comments/" + newComment.getId();
+                });
+        return JobController.accepted(job);
     }
 
 
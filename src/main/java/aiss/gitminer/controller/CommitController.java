@@ -1,8 +1,18 @@
 package aiss.gitminer.controller;
 
+import aiss.gitminer.dto.JobDto;
 import aiss.gitminer.exception.CommitNotFoundException;
+import aiss.gitminer.exception.IngestionQueueFullException;
+import aiss.gitminer.exception.InvalidCursorException;
+import aiss.gitminer.exception.InvalidFilterException;
 import aiss.gitminer.model.Commit;
 import aiss.gitminer.repository.CommitRepository;
+import aiss.gitminer.repository.ListFilters;
+import aiss.gitminer.service.ActivityRollups;
+import aiss.gitminer.service.IngestionJob;
+import aiss.gitminer.service.IngestionQueue;
+import aiss.gitminer.service.KeysetPager;
+import aiss.gitminer.service.ResourceVersions;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,10 +24,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Tag(name = "Commit", description = "Commit management API")
@@ -28,10 +44,22 @@ public class CommitController {
     @Autowired // cargar repositorio de commit con datos
     CommitRepository commitRepository;
 
+    @Autowired
+    KeysetPager keysetPager;
+
+    @Autowired
+    IngestionQueue ingestionQueue;
+
+    @Autowired
+    ActivityRollups activityRollups;
+
+    @Autowired
+    ResourceVersions resourceVersions;
+
     // Devolver todos los users
     @Operation(
             summary = "Get a list of all commits",
-            description = "Retrieve a list of all commits",
+            description = "Retrieve a list of all commits, filtered by authorName, project, since and until; see ListFilters",
             tags = { "commit", "get" })
     @ApiResponses({
             @ApiResponse(responseCode = "200", content =
@@ -39,10 +67,26 @@ public class CommitController {
                             mediaType = "application/json")})
     })
     @GetMapping // especificar metodo HTTP a utilizar
-    public List<Commit> findAll (@RequestParam(required = false) String authorName,
-                                 @RequestParam(required = false) String order,
+    public List<Commit> findAll (@RequestParam(required = false) String order,
                                  @RequestParam(defaultValue = "0") int page,
-                                 @RequestParam(defaultValue = "5") int size) {
+                                 @RequestParam(defaultValue = "5") int size,
+                                 @Parameter(description = "cursor from the X-Next-Cursor header; pass it empty to start paging by cursor")
+                                 @RequestParam(required = false) String after,
+                                 @Parameter(description = "filters such as authorName=ann,bob&since=2023-01-01T00:00:00Z")
+                                 @RequestParam MultiValueMap<String, String> filters,
+                                 HttpServletResponse response)
+            throws InvalidCursorException, InvalidFilterException {
+        Specification<Commit> filter = ListFilters.COMMITS.compile(filters, order);
+
+        if (after != null) {
+            Slice<Commit> sliceCommits = keysetPager.findAll(Commit.class, filter, order, after, size);
+            String next = keysetPager.nextCursor(sliceCommits, order);
+            if (next != null) {
+                response.setHeader(KeysetPager.NEXT_CURSOR_HEADER, next);
+            }
+            return sliceCommits.getContent();
+        }
+
         Pageable paging;
 
         if (order != null) {
@@ -57,14 +101,7 @@ public class CommitController {
             paging = PageRequest.of(page, size);
         }
 
-        Page<Commit> pageCommits;
-
-        if (authorName == null) {
-            pageCommits = commitRepository.findAll(paging);
-        }
-        else {
-            pageCommits = commitRepository.findByAuthorName(authorName, paging);
-        }
+        Slice<Commit> pageCommits = keysetPager.findAll(Commit.class, filter, paging);
         return pageCommits.getContent();
     }
 
@@ -92,7 +129,31 @@ public class CommitController {
 
     @PostMapping()
     public Commit create(@RequestBody Commit commit) {
-        return commitRepository.save(commit);
+        ActivityRollups.Change change = activityRollups.before(
+                new ActivityRollups.Change().commits(List.of(commit.getId())));
+        Commit newCommit = resourceVersions.saveCommit(commit);
+        activityRollups.after(change);
+        return newCommit;
+    }
+
+    // POST http://localhost:8080/gitminer/commits?async=true
+    @Operation(
+            summary = "Queue a new commit",
+            description = "Accept a commit and create it in the background; GET /gitminer/jobs/{id} reports its status, and what was stored once it is done",
+            tags = { "commit", "post" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", content = {@Content(schema = @Schema(implementation = JobDto.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "429", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping(params = "async=true")
+    public ResponseEntity<JobDto> createAsync(@RequestBody Commit commit) throws IngestionQueueFullException {
+        IngestionJob job = ingestionQueue.submit("commit", Map.of("commits", 1),
+                running -> {
+                    Commit newCommit = create(commit);
+                    running.stored("commits", 1);
+                    return "/gitminer/commits/" + newCommit.getId();
+                });
+        return JobController.accepted(job);
     }
 }
 
@@ -1,9 +1,26 @@
 package aiss.gitminer.controller;
 
+import aiss.gitminer.config.StatementBudget;
+import aiss.gitminer.dto.IssueDto;
+import aiss.gitminer.dto.JobDto;
+import aiss.gitminer.exception.IngestionQueueFullException;
+import aiss.gitminer.exception.InvalidCursorException;
+import aiss.gitminer.exception.InvalidFilterException;
 import aiss.gitminer.exception.IssueNotFoundException;
+import aiss.gitminer.exception.UserConflictException;
 import aiss.gitminer.model.Comment;
 import aiss.gitminer.model.Issue;
+import aiss.gitminer.repository.CommentRepository;
 import aiss.gitminer.repository.IssueRepository;
+import aiss.gitminer.repository.ListFilters;
+import aiss.gitminer.repository.UserRepository;
+import aiss.gitminer.service.ActivityRollups;
+import aiss.gitminer.service.IngestionJob;
+import aiss.gitminer.service.IngestionQueue;
+import aiss.gitminer.service.KeysetPager;
+import aiss.gitminer.service.ResourceVersions;
+import aiss.gitminer.service.UserIdentityMap;
+import aiss.gitminer.service.ViewAssembler;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -15,13 +32,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
-import java.util.Collections;
-import java.util.Comparator;
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Tag(name = "Issue", description = "Issue management API")
 @RestController
@@ -31,20 +54,60 @@ public class IssueController {
     @Autowired
     IssueRepository issueRepository;
 
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ViewAssembler viewAssembler;
+
+    @Autowired
+    KeysetPager keysetPager;
+
+    @Autowired
+    ResourceVersions resourceVersions;
+
+    @Autowired
+    IngestionQueue ingestionQueue;
+
+    @Autowired
+    ActivityRollups activityRollups;
+
     @Operation(
             summary = "Retrieve a list of all issues",
-            description = "Get a list of all issues",
+            description = "Get a list of issue summaries with their comment count, filtered by state, author, project, label, since and until; see ListFilters",
             tags = { "projects", "get" })
     @ApiResponses({
             @ApiResponse(responseCode = "200", content =
-                    {@Content(schema = @Schema(implementation = Issue.class),
+                    {@Content(schema = @Schema(implementation = IssueDto.class),
                             mediaType = "application/json")})
     })
     @GetMapping
-    public List<Issue> findAll (@RequestParam(required = false) String state,
-                                @RequestParam(required = false) String order,
+    @StatementBudget(statements = 6)
+    public List<IssueDto> findAll (@RequestParam(required = false) String order,
                                 @RequestParam(defaultValue = "0") int page,
-                                @RequestParam(defaultValue = "5") int size) {
+                                @RequestParam(defaultValue = "5") int size,
+                                @Parameter(description = "cursor from the X-Next-Cursor header; pass it empty to start paging by cursor")
+                                @RequestParam(required = false) String after,
+                                @Parameter(description = "children to include: comments, or none")
+                                @RequestParam(defaultValue = "none") Set<String> expand,
+                                @Parameter(description = "filters such as state=opened,closed&label=bug&author=ann&since=2023-01-01T00:00:00Z")
+                                @RequestParam MultiValueMap<String, String> filters,
+                                HttpServletResponse response)
+            throws InvalidCursorException, InvalidFilterException {
+        Specification<Issue> filter = ListFilters.ISSUES.compile(filters, order);
+
+        if (after != null) {
+            Slice<Issue> sliceIssues = keysetPager.findAll(Issue.class, filter, order, after, size);
+            String next = keysetPager.nextCursor(sliceIssues, order);
+            if (next != null) {
+                response.setHeader(KeysetPager.NEXT_CURSOR_HEADER, next);
+            }
+            return viewAssembler.issueSummaries(sliceIssues.getContent(), expand);
+        }
+
         Pageable paging;
 
         if (order != null) {
@@ -59,15 +122,8 @@ public class IssueController {
             paging = PageRequest.of(page, size);
         }
 
-        Page<Issue> pageIssues;
-
-        if (state == null) {
-            pageIssues = issueRepository.findAll(paging);
-        }
-        else {
-            pageIssues = issueRepository.findByState(state, paging);
-        }
-        return pageIssues.getContent();
+        Slice<Issue> pageIssues = keysetPager.findAll(Issue.class, filter, paging);
+        return viewAssembler.issueSummaries(pageIssues.getContent(), expand);
     }
 
 
@@ -79,18 +135,28 @@ public class IssueController {
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", content =
-                    {@Content(schema = @Schema(implementation = Issue.class),
-                            mediaType = "application/json")})
+                    {@Content(schema = @Schema(implementation = IssueDto.class),
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping("/{id}")
-    public Issue findById(@Parameter(description = "id of an issue to be searched")
-                          @PathVariable String id) throws IssueNotFoundException {
-        Optional<Issue> foundIssue = issueRepository.findById(id);
+    @StatementBudget(statements = 6)
+    public IssueDto findById(@Parameter(description = "id of an issue to be searched")
+                             @PathVariable String id,
+                             @Parameter(description = "children to include: comments, or none")
+                             @RequestParam(defaultValue = "comments") Set<String> expand,
+                             ServletWebRequest request)
+            throws IssueNotFoundException {
+        ResourceVersions.Validator validator = resourceVersions.issue(id).orElseThrow(IssueNotFoundException::new);
+        if (resourceVersions.notModified(request, validator)) {
+            return null;
+        }
+        Optional<Issue> foundIssue = issueRepository.findDetailedById(id);
 
         if (!foundIssue.isPresent()) {
             throw new IssueNotFoundException();
         }
-        return foundIssue.get();
+        return viewAssembler.issue(foundIssue.get(), expand);
     }
 
 
@@ -102,42 +168,84 @@ public class IssueController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", content =
                     {@Content(schema = @Schema(implementation = Issue.class),
-                            mediaType = "application/json")})
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping("/{id}/comments") // especificar metodo HTTP a utilizar
+    @StatementBudget(statements = 4)
     public List<Comment> findIssueComments (
             @Parameter(description = "id of the issue to be searched")
             @PathVariable String id,
+            @Parameter(description = "created_at, updated_at or author, prefixed with - for descending order")
             @RequestParam(required = false) String order,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "5") int size)
+            @RequestParam(defaultValue = "5") int size,
+            ServletWebRequest request)
             throws IssueNotFoundException {
 
-        Optional<Issue> issueFound = issueRepository.findById(id);
-
-        if (!issueFound.isPresent()) {
-            throw new IssueNotFoundException();
+        ResourceVersions.Validator validator = resourceVersions.issueComments(id).orElseThrow(IssueNotFoundException::new);
+        if (resourceVersions.notModified(request, validator)) {
+            return null;
         }
-        List<Comment> issueComments = issueFound.get().getComments();
+        Sort sort = Sort.by("createdAt");
 
         if (order != null) {
             if (order.startsWith("-")) {
-                issueComments.sort(Collections.reverseOrder());
+                sort = Sort.by(commentSortProperty(order.substring(1))).descending();
+            }
+            else {
+                sort = Sort.by(commentSortProperty(order)).ascending();
             }
         }
-        int fromIndex = page * size;
-        int toIndex = Math.min(fromIndex + size, issueComments.size());
+        // Comments posted at the same time, or by the same author, keep their place across pages
+        return commentRepository.findByIssueId(id, PageRequest.of(page, size, sort.and(Sort.by("id")))).getContent();
+    }
 
-        if (fromIndex >= issueComments.size()) {
-            return Collections.emptyList();
+    // Comments are sorted by the names exposed in the API (created_at, updated_at, author)
+    private static String commentSortProperty(String order) {
+        switch (order) {
+            case "created_at":
+                return "createdAt";
+            case "updated_at":
+                return "updatedAt";
+            case "author":
+                return "author.username";
+            default:
+                return order;
         }
-
-        return issueComments.subList(fromIndex, toIndex);
     }
 
     @PostMapping
-    public Issue createIssue(@RequestBody Issue issue) {
-        return issueRepository.save(issue);
+    public Issue createIssue(@RequestBody Issue issue) throws UserConflictException {
+        new UserIdentityMap(userRepository).resolveIssues(List.of(issue));
+        ActivityRollups.Change change = activityRollups.before(new ActivityRollups.Change().issues(List.of(issue)));
+        Issue newIssue = resourceVersions.saveIssue(issue);
+        activityRollups.after(change);
+        return newIssue;
+    }
+
+    // POST http://localhost:8080/gitminer/issues?async=true
+    @Operation(
+            summary = "Queue a new issue",
+            description = "Accept an issue and create it in the background; GET /gitminer/jobs/{id} reports its status, and what was stored once it is done",
+            tags = {"issues", "post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", content = {@Content(schema = @Schema(implementation = JobDto.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "429", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping(params = "async=true")
+    public ResponseEntity<JobDto> createIssueAsync(@RequestBody Issue issue) throws IngestionQueueFullException {
+        int comments = issue.getComments() == null ? 0 : issue.getComments().size();
+
+        IngestionJob job = ingestionQueue.submit("issue", Map.of("issues", 1, "comments", comments),
+                running -> {
+                    Issue newIssue = createIssue(issue);
+                    running.stored("issues", 1);
+                    running.stored("comments", comments);
+                    return "/gitminer/issues/" + newIssue.getId();
+                });
+        return JobController.accepted(job);
     }
 
 }
\ No newline at end of file
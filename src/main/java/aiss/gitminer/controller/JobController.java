@@ -0,0 +1,49 @@
+package aiss.gitminer.controller;
+
+import aiss.gitminer.dto.JobDto;
+import aiss.gitminer.exception.JobNotFoundException;
+import aiss.gitminer.service.IngestionJob;
+import aiss.gitminer.service.IngestionQueue;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+
+@Tag(name = "Job", description = "Asynchronous ingestion jobs")
+@RestController
+@RequestMapping("/gitminer/jobs")
+public class JobController {
+
+    @Autowired
+    IngestionQueue ingestionQueue;
+
+    // GET http://localhost:8080/gitminer/jobs/:jobId
+    @Operation(
+            summary = "Get an ingestion job",
+            description = "Report the status and the received and stored counts of a job accepted with async=true",
+            tags = { "jobs", "get" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content =
+                    {@Content(schema = @Schema(implementation = JobDto.class),
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping("/{id}")
+    public JobDto findById(@Parameter(description = "id of the job") @PathVariable String id)
+            throws JobNotFoundException {
+        return ingestionQueue.find(id).orElseThrow(JobNotFoundException::new).toDto();
+    }
+
+    // 202 answered by the async variants of the POST endpoints
+    static ResponseEntity<JobDto> accepted(IngestionJob job) {
+        return ResponseEntity.accepted().location(URI.create("/gitminer/jobs/" + job.getId())).body(job.toDto());
+    }
+}
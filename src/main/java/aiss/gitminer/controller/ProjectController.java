@@ -1,10 +1,44 @@
 package aiss.gitminer.controller;
 
+import aiss.gitminer.config.StatementBudget;
+import aiss.gitminer.dto.ActivityDto;
+import aiss.gitminer.dto.IssueDto;
+import aiss.gitminer.dto.JobDto;
+import aiss.gitminer.dto.ProjectDelta;
+import aiss.gitminer.dto.ProjectDto;
+import aiss.gitminer.dto.ProjectStatsDto;
+import aiss.gitminer.dto.ProjectSyncDto;
 import aiss.gitminer.exception.CommitNotFoundException;
+import aiss.gitminer.exception.IngestionQueueFullException;
+import aiss.gitminer.exception.InvalidBulkPayloadException;
+import aiss.gitminer.exception.InvalidCursorException;
+import aiss.gitminer.exception.InvalidFilterException;
+import aiss.gitminer.exception.InvalidSyncDeltaException;
 import aiss.gitminer.exception.ProjectNotFoundException;
+import aiss.gitminer.exception.UserConflictException;
+import aiss.gitminer.model.Comment;
 import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
 import aiss.gitminer.model.Project;
+import aiss.gitminer.repository.CommentRepository;
+import aiss.gitminer.repository.CommitRepository;
+import aiss.gitminer.repository.IssueRepository;
+import aiss.gitminer.repository.ListFilters;
 import aiss.gitminer.repository.ProjectRepository;
+import aiss.gitminer.repository.UserRepository;
+import aiss.gitminer.service.ActivityRollups;
+import aiss.gitminer.service.IngestionJob;
+import aiss.gitminer.service.IngestionQueue;
+import aiss.gitminer.service.KeysetPager;
+import aiss.gitminer.service.ProjectBulkLoader;
+import aiss.gitminer.service.ProjectExporter;
+import aiss.gitminer.service.ProjectStatistics;
+import aiss.gitminer.service.ProjectSynchronizer;
+import aiss.gitminer.service.ReadCache;
+import aiss.gitminer.service.ResourceVersions;
+import aiss.gitminer.service.SearchIndex;
+import aiss.gitminer.service.UserIdentityMap;
+import aiss.gitminer.service.ViewAssembler;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -16,14 +50,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.swing.*;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Tag(name = "Project", description = "Project management API")
 @RestController
@@ -34,21 +83,85 @@ public class ProjectController {
     @Autowired
     ProjectRepository projectRepository;
 
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    CommitRepository commitRepository;
+
+    @Autowired
+    IssueRepository issueRepository;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    KeysetPager keysetPager;
+
+    @Autowired
+    ProjectBulkLoader projectBulkLoader;
+
+    @Autowired
+    ViewAssembler viewAssembler;
+
+    @Autowired
+    ProjectExporter projectExporter;
+
+    @Autowired
+    ReadCache readCache;
+
+    @Autowired
+    ResourceVersions resourceVersions;
+
+    @Autowired
+    ProjectSynchronizer projectSynchronizer;
+
+    @Autowired
+    IngestionQueue ingestionQueue;
+
+    @Autowired
+    ProjectStatistics projectStatistics;
+
+    @Autowired
+    ActivityRollups activityRollups;
+
+    @Autowired
+    SearchIndex searchIndex;
+
     // GET https://localhost:8080/giminer/projects
     @Operation(
             summary = "Get a list of all projects",
-            description = "Retrieve a list of all projects",
+            description = "Retrieve a list of project summaries with their counts, filtered by name; children are only included when expanded",
             tags = { "projects", "get" })
     @ApiResponses({
             @ApiResponse(responseCode = "200", content =
-                    {@Content(schema = @Schema(implementation = Project.class),
+                    {@Content(schema = @Schema(implementation = ProjectDto.class),
                             mediaType = "application/json")})
     })
     @GetMapping
-    public List<Project> findAll (@RequestParam(required = false) String name,
-                                  @RequestParam(required = false) String order,
+    @StatementBudget(statements = 10)
+    public List<ProjectDto> findAll (@RequestParam(required = false) String order,
                                   @RequestParam(defaultValue = "0") int page,
-                                  @RequestParam(defaultValue = "5") int size) {
+                                  @RequestParam(defaultValue = "5") int size,
+                                  @Parameter(description = "cursor from the X-Next-Cursor header; pass it empty to start paging by cursor")
+                                  @RequestParam(required = false) String after,
+                                  @Parameter(description = "children to include: commits, issues, comments, or none")
+                                  @RequestParam(defaultValue = "none") Set<String> expand,
+                                  @Parameter(description = "filters such as name=gitminer,gitlab")
+                                  @RequestParam MultiValueMap<String, String> filters,
+                                  HttpServletResponse response)
+            throws InvalidCursorException, InvalidFilterException {
+        Specification<Project> filter = ListFilters.PROJECTS.compile(filters, order);
+
+        if (after != null) {
+            Slice<Project> sliceProjects = keysetPager.findAll(Project.class, filter, order, after, size);
+            String next = keysetPager.nextCursor(sliceProjects, order);
+            if (next != null) {
+                response.setHeader(KeysetPager.NEXT_CURSOR_HEADER, next);
+            }
+            return viewAssembler.projectSummaries(sliceProjects.getContent(), expand);
+        }
+
         Pageable paging;
 
         if (order != null) {
@@ -63,15 +176,8 @@ public class ProjectController {
             paging = PageRequest.of(page, size);
         }
 
-        Page<Project> pageProjects;
-
-        if (name == null) {
-            pageProjects = projectRepository.findAll(paging);
-        }
-        else {
-            pageProjects = projectRepository.findByName(name, paging);
-        }
-        return pageProjects.getContent();
+        Slice<Project> pageProjects = keysetPager.findAll(Project.class, filter, paging);
+        return viewAssembler.projectSummaries(pageProjects.getContent(), expand);
     }
 
 
@@ -83,21 +189,184 @@ public class ProjectController {
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", content =
-                    {@Content(schema = @Schema(implementation = Project.class),
-                            mediaType = "application/json")})
+                    {@Content(schema = @Schema(implementation = ProjectDto.class),
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping("/{id}")
-    public Project findById(@Parameter(description = "id of a project to be searched")
-                            @PathVariable String id) throws ProjectNotFoundException {
+    @StatementBudget(statements = 8)
+    public ProjectDto findById(@Parameter(description = "id of a project to be searched")
+                               @PathVariable String id,
+                               @Parameter(description = "children to include: commits, issues, comments, or none")
+                               @RequestParam(defaultValue = "commits,issues,comments") Set<String> expand,
+                               ServletWebRequest request)
+            throws ProjectNotFoundException {
+        ResourceVersions.Validator validator = resourceVersions.project(id).orElseThrow(ProjectNotFoundException::new);
+        if (resourceVersions.notModified(request, validator)) {
+            return null;
+        }
         Optional<Project> foundProject = projectRepository.findById(id);
 
         if (!foundProject.isPresent()) {
             throw new ProjectNotFoundException();
         }
-        return foundProject.get();
+        return viewAssembler.project(foundProject.get(), expand);
+    }
+
+
+
+
+    // GET https://localhost:8080/giminer/projects/:projectId/commits
+    @Operation(
+            summary = "Get the commits of a project",
+            description = "Retrieve a page of the commits of a project; the X-Next-Cursor header points to the next one",
+            tags = {"get by id", "project", "commit"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content =
+                    {@Content(schema = @Schema(implementation = Commit.class),
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping("/{id}/commits")
+    public List<Commit> findCommits(@Parameter(description = "id of the project") @PathVariable String id,
+                                    @Parameter(description = "attribute to sort by, such as -authoredDate; id by default")
+                                    @RequestParam(required = false) String order,
+                                    @Parameter(description = "cursor from the X-Next-Cursor header; none for the first page")
+                                    @RequestParam(required = false) String after,
+                                    @RequestParam(defaultValue = "5") int size,
+                                    @Parameter(description = "filters such as authorName=ann&since=2023-01-01T00:00:00Z")
+                                    @RequestParam MultiValueMap<String, String> filters,
+                                    HttpServletResponse response)
+            throws ProjectNotFoundException, InvalidCursorException, InvalidFilterException {
+        if (!projectRepository.existsById(id)) {
+            throw new ProjectNotFoundException();
+        }
+        Specification<Commit> filter = ListFilters.COMMITS.compile(filters, order, true);
+
+        Slice<Commit> commits = keysetPager.findAllWithin(Commit.class, "projectId", id, filter, order, after, size);
+        String next = keysetPager.nextCursor(commits, order);
+        if (next != null) {
+            response.setHeader(KeysetPager.NEXT_CURSOR_HEADER, next);
+        }
+        return commits.getContent();
+    }
+
+
+    // GET https://localhost:8080/giminer/projects/:projectId/issues
+    @Operation(
+            summary = "Get the issues of a project",
+            description = "Retrieve a page of issue summaries of a project; the X-Next-Cursor header points to the next one",
+            tags = {"get by id", "project", "issue"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content =
+                    {@Content(schema = @Schema(implementation = IssueDto.class),
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping("/{id}/issues")
+    public List<IssueDto> findIssues(@Parameter(description = "id of the project") @PathVariable String id,
+                                     @Parameter(description = "attribute to sort by, such as -createdAt; id by default")
+                                     @RequestParam(required = false) String order,
+                                     @Parameter(description = "cursor from the X-Next-Cursor header; none for the first page")
+                                     @RequestParam(required = false) String after,
+                                     @RequestParam(defaultValue = "5") int size,
+                                     @Parameter(description = "children to include: comments, or none")
+                                     @RequestParam(defaultValue = "none") Set<String> expand,
+                                     @Parameter(description = "filters such as state=opened&label=bug,ui&author=ann")
+                                     @RequestParam MultiValueMap<String, String> filters,
+                                     HttpServletResponse response)
+            throws ProjectNotFoundException, InvalidCursorException, InvalidFilterException {
+        if (!projectRepository.existsById(id)) {
+            throw new ProjectNotFoundException();
+        }
+        Specification<Issue> filter = ListFilters.ISSUES.compile(filters, order, true);
+
+        Slice<Issue> issues = keysetPager.findAllWithin(Issue.class, "projectId", id, filter, order, after, size);
+        String next = keysetPager.nextCursor(issues, order);
+        if (next != null) {
+            response.setHeader(KeysetPager.NEXT_CURSOR_HEADER, next);
+        }
+        return viewAssembler.issueSummaries(issues.getContent(), expand);
+    }
+
+
+    // GET https://localhost:8080/giminer/projects/:projectId/stats
+    @Operation(
+            summary = "Get the statistics of a project",
+            description = "Commits and comments per author, issues per state with their votes, weekly activity and mean time to close",
+            tags = {"get by id", "project"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content =
+                    {@Content(schema = @Schema(implementation = ProjectStatsDto.class),
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping("/{id}/stats")
+    public ProjectStatsDto findStats(@Parameter(description = "id of the project") @PathVariable String id)
+            throws ProjectNotFoundException {
+        return projectStatistics.project(id);
     }
 
 
+    // GET https://localhost:8080/giminer/projects/:projectId/activity
+    @Operation(
+            summary = "Get the activity of a project",
+            description = "Commits, opened and closed issues and comments per day (UTC) or per week, read from the activity rollups",
+            tags = {"get by id", "project"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content =
+                    {@Content(schema = @Schema(implementation = ActivityDto.class),
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping("/{id}/activity")
+    public List<ActivityDto> findActivity(@Parameter(description = "id of the project") @PathVariable String id,
+                                          @Parameter(description = "first day included, yyyy-mm-dd")
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate since,
+                                          @Parameter(description = "last day included, yyyy-mm-dd")
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate until,
+                                          @Parameter(description = "commit author name, or username for issues and comments")
+                                          @RequestParam(required = false) String author,
+                                          @Parameter(description = "day or week")
+                                          @RequestParam(defaultValue = "day") String interval)
+            throws ProjectNotFoundException {
+        return activityRollups.activity(id, since, until, author, interval.equals("week"));
+    }
+
+
+    // GET https://localhost:8080/giminer/projects/:projectId/export
+    @Operation(
+            summary = "Export a project",
+            description = "Stream a whole project as a JSON document or as NDJSON lines readable by the bulk endpoint",
+            tags = {"get by id", "project"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content =
+                    {@Content(schema = @Schema(implementation = ProjectDto.class),
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping("/{id}/export")
+    public ResponseEntity<StreamingResponseBody> exportProject(@Parameter(description = "id of the project to be exported")
+                                                               @PathVariable String id,
+                                                               @Parameter(description = "json or ndjson")
+                                                               @RequestParam(defaultValue = "json") String format)
+            throws ProjectNotFoundException {
+        if (!projectRepository.existsById(id)) {
+            throw new ProjectNotFoundException();
+        }
+        boolean ndjson = format.equals("ndjson");
+
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.parseMediaType("application/x-ndjson") : MediaType.APPLICATION_JSON)
+                .body(out -> projectExporter.export(id, out, ndjson));
+    }
 
 
     // POST http://localhost:8080/gitminer/projects
@@ -112,14 +381,72 @@ public class ProjectController {
     })
     @ResponseStatus(HttpStatus.CREATED)
     @PostMapping()
-    public Project createProject(@Valid @RequestBody Project project) {
-        Project newProject = projectRepository.save(
+    public Project createProject(@Valid @RequestBody Project project) throws UserConflictException {
+        new UserIdentityMap(userRepository).resolveIssues(project.getIssues());
+        ActivityRollups.Change change = activityRollups.before(
+                new ActivityRollups.Change().project(project.getId()).children(project));
+        Children children = children(project.getId(), project);
+        Project newProject = resourceVersions.saveProject(
                 new Project(project.getId(), project.getName(), project.getWebUrl(),
                         project.getCommits(), project.getIssues()));
+        activityRollups.after(change);
+        readCache.evictProject(newProject.getId(), children.commits(), children.issues(), children.comments());
         return newProject;
     }
 
 
+    // POST http://localhost:8080/gitminer/projects?async=true
+    @Operation(
+            summary = "Queue a new project",
+            description = "Accept a project and create it in the background; GET /gitminer/jobs/{id} reports its status, and what was stored once it is done",
+            tags = {"post", "project"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", content = {@Content(schema = @Schema(implementation = JobDto.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "429", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping(params = "async=true")
+    public ResponseEntity<JobDto> createProjectAsync(@Valid @RequestBody Project project)
+            throws IngestionQueueFullException {
+        int commits = project.getCommits() == null ? 0 : project.getCommits().size();
+        int issues = project.getIssues() == null ? 0 : project.getIssues().size();
+        int comments = project.getIssues() == null ? 0 : project.getIssues().stream()
+                .mapToInt(issue -> issue.getComments() == null ? 0 : issue.getComments().size())
+                .sum();
+
+        IngestionJob job = ingestionQueue.submit("project",
+                Map.of("projects", 1, "commits", commits, "issues", issues, "comments", comments),
+                running -> {
+                    Project newProject = createProject(project);
+                    running.stored("projects", 1);
+                    running.stored("commits", commits);
+                    running.stored("issues", issues);
+                    running.stored("comments", comments);
+                    return "/gitminer/projects/" + newProject.getId();
+                });
+        return JobController.accepted(job);
+    }
+
+
+    // POST http://localhost:8080/gitminer/projects/bulk
+    @Operation(
+            summary = "Bulk load a project",
+            description = "Create a project from an NDJSON stream: a project header line followed by user, commit, issue and comment lines",
+            tags = {"post", "project"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", content = {@Content(schema = @Schema(implementation = Map.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())})
+    })
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(value = "/bulk", consumes = {"application/x-ndjson", "application/json"})
+    public Map<String, Integer> bulkLoadProject(HttpServletRequest request)
+            throws InvalidBulkPayloadException, IOException {
+        return projectBulkLoader.load(request.getInputStream());
+    }
+
+
     // PUT http://localhost:8080/api/projects/:projectId
     @Operation(
             summary = "Put a new project",
@@ -135,20 +462,52 @@ public class ProjectController {
     @PutMapping("/{id}")
     public void updateProject(@Valid @RequestBody Project updatedProject,
                               @Parameter (description = "id of the project to be updated") @PathVariable String id)
-            throws ProjectNotFoundException {
+            throws ProjectNotFoundException, UserConflictException {
         Optional<Project> foundProject = projectRepository.findById(id);
 
         if (!foundProject.isPresent()) {
             throw new ProjectNotFoundException();
         }
         Project nowProject = foundProject.get();
+        new UserIdentityMap(userRepository).resolveIssues(updatedProject.getIssues());
+        ActivityRollups.Change change = activityRollups.before(
+                new ActivityRollups.Change().project(id).children(updatedProject));
+        // The collections move children in and out of the project without an entity event, so the
+        // search index is told about those of the project before and after, as sync does
+        Children children = children(id, updatedProject);
 
         nowProject.setName(updatedProject.getName());
         nowProject.setWebUrl(updatedProject.getWebUrl());
         nowProject.setCommits(updatedProject.getCommits());
         nowProject.setIssues(updatedProject.getIssues());
 
-        projectRepository.save(nowProject);
+        resourceVersions.saveProject(nowProject);
+        activityRollups.after(change);
+        readCache.evictProject(id, children.commits(), children.issues(), children.comments());
+        searchIndex.changed(SearchIndex.COMMIT, children.commits());
+        searchIndex.changed(SearchIndex.ISSUE, children.issues());
+        searchIndex.changed(SearchIndex.COMMENT, children.comments());
+    }
+
+    // PATCH http://localhost:8080/gitminer/projects/:projectId/sync
+    @Operation(
+            summary = "Synchronize a project",
+            description = "Apply the commits, issues and comments added, changed or removed since the last sync",
+            tags = {"patch", "project"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = ProjectSyncDto.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @PatchMapping("/{id}/sync")
+    public ProjectSyncDto syncProject(@RequestBody ProjectDelta delta,
+                                      @Parameter (description = "id of the project to be synchronized") @PathVariable String id)
+            throws ProjectNotFoundException, InvalidSyncDeltaException, UserConflictException {
+        ProjectSyncDto result = projectSynchronizer.sync(id, delta);
+        // The synchronizer writes children through entities and JPQL, which Hibernate evicts itself
+        readCache.evictProject(id, Set.of(), Set.of(), Set.of());
+        return result;
     }
 
     // DELETE http://localhost:8080/api/projects/:projectId
@@ -173,6 +532,31 @@ public class ProjectController {
             throw new ProjectNotFoundException();
         }
         projectRepository.deleteById(id);
+        activityRollups.after(new ActivityRollups.Change().project(id));
+        // The children are deleted with the project, through entities that Hibernate evicts itself
+        readCache.evictProject(id, Set.of(), Set.of(), Set.of());
+    }
+
+    // Ids of the children of a stored project and of a payload replacing them
+    private record Children(Set<String> commits, Set<String> issues, Set<String> comments) {
+    }
+
+    private Children children(String id, Project payload) {
+        Set<String> commits = new HashSet<>(commitRepository.findIdsByProjectId(id));
+        Set<String> issues = new HashSet<>(issueRepository.findIdsByProjectId(id));
+        Set<String> comments = new HashSet<>(commentRepository.findIdsByProjectId(id));
+        if (payload.getCommits() != null) {
+            payload.getCommits().forEach(commit -> commits.add(commit.getId()));
+        }
+        if (payload.getIssues() != null) {
+            for (Issue issue : payload.getIssues()) {
+                issues.add(issue.getId());
+                if (issue.getComments() != null) {
+                    issue.getComments().stream().map(Comment::getId).forEach(comments::add);
+                }
+            }
+        }
+        return new Children(commits, issues, comments);
     }
 
 
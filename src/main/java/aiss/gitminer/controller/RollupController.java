@@ -0,0 +1,64 @@
+package aiss.gitminer.controller;
+
+import aiss.gitminer.config.StatementBudget;
+import aiss.gitminer.dto.RollupCheckDto;
+import aiss.gitminer.exception.ProjectNotFoundException;
+import aiss.gitminer.service.ActivityRollups;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@Tag(name = "Rollup", description = "Maintenance of the activity rollups behind the time series")
+@RestController
+@RequestMapping("/gitminer/rollups")
+public class RollupController {
+
+    @Autowired
+    ActivityRollups activityRollups;
+
+    // POST http://localhost:8080/gitminer/rollups/rebuild
+    @Operation(
+            summary = "Rebuild the activity rollups",
+            description = "Count again the activity of a project, or of every project, from the commits, issues and comments stored",
+            tags = { "rollups", "post" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content =
+                    {@Content(schema = @Schema(implementation = Map.class),
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping("/rebuild")
+    public Map<String, Integer> rebuild(@Parameter(description = "id of a project; all of them by default")
+                                        @RequestParam(required = false) String project)
+            throws ProjectNotFoundException {
+        return Map.of("rows", activityRollups.rebuild(project));
+    }
+
+    // GET http://localhost:8080/gitminer/rollups/check
+    @Operation(
+            summary = "Check the activity rollups",
+            description = "Compare the activity rollups of a project, or of every project, with counts taken from the commits, issues and comments",
+            tags = { "rollups", "get" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content =
+                    {@Content(schema = @Schema(implementation = RollupCheckDto.class),
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping("/check")
+    // Recounts every row of the project, or of all of them
+    @StatementBudget(statements = StatementBudget.UNLIMITED, millis = StatementBudget.UNLIMITED)
+    public RollupCheckDto check(@Parameter(description = "id of a project; all of them by default")
+                                @RequestParam(required = false) String project)
+            throws ProjectNotFoundException {
+        return activityRollups.check(project);
+    }
+}
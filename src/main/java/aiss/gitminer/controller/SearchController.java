@@ -0,0 +1,72 @@
+package aiss.gitminer.controller;
+
+import aiss.gitminer.dto.SearchResultsDto;
+import aiss.gitminer.exception.InvalidFilterException;
+import aiss.gitminer.service.SearchIndex;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+@Tag(name = "Search", description = "Full-text search over commits, issues and comments")
+@RestController
+@RequestMapping("/gitminer/search")
+public class SearchController {
+
+    @Autowired
+    SearchIndex searchIndex;
+
+    // GET http://localhost:8080/gitminer/search?q=...
+    @Operation(
+            summary = "Search commits, issues and comments",
+            description = "Find the commits, issues and comments whose title, message, description or body match, best first",
+            tags = { "search", "get" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content =
+                    {@Content(schema = @Schema(implementation = SearchResultsDto.class),
+                            mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping
+    public SearchResultsDto search(@Parameter(description = "words to look for; supports +, |, -, \"phrases\" and prefix*")
+                                   @RequestParam String q,
+                                   @Parameter(description = "commit, issue or comment; all of them by default")
+                                   @RequestParam(defaultValue = "") Set<String> type,
+                                   @RequestParam(required = false) String project,
+                                   @Parameter(description = "author name of commits, username for issues and comments")
+                                   @RequestParam(required = false) String author,
+                                   @Parameter(description = "state of the issues; excludes commits and comments")
+                                   @RequestParam(required = false) String state,
+                                   @RequestParam(required = false) Instant since,
+                                   @RequestParam(required = false) Instant until,
+                                   @RequestParam(defaultValue = "0") int page,
+                                   @RequestParam(defaultValue = "10") int size)
+            throws IOException, InvalidFilterException {
+        return searchIndex.search(q, type, project, author, state, since, until, page, size);
+    }
+
+    // POST http://localhost:8080/gitminer/search/reindex
+    @Operation(
+            summary = "Rebuild the search index",
+            description = "Index again every commit, issue and comment in the database and return how many of each there are",
+            tags = { "search", "post" })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content =
+                    {@Content(schema = @Schema(implementation = Map.class),
+                            mediaType = "application/json")})
+    })
+    @PostMapping("/reindex")
+    public Map<String, Integer> reindex() throws IOException {
+        return searchIndex.rebuild();
+    }
+}
@@ -1,10 +1,15 @@
 package aiss.gitminer.controller;
 
+import aiss.gitminer.exception.InvalidCursorException;
+import aiss.gitminer.exception.InvalidFilterException;
 import aiss.gitminer.exception.ProjectNotFoundException;
+import aiss.gitminer.exception.UserConflictException;
 import aiss.gitminer.exception.UserNotFoundException;
 import aiss.gitminer.model.Project;
 import aiss.gitminer.model.User;
+import aiss.gitminer.repository.ListFilters;
 import aiss.gitminer.repository.UserRepository;
+import aiss.gitminer.service.KeysetPager;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -16,9 +21,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,9 +40,12 @@ public class UserController {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    KeysetPager keysetPager;
+
     @Operation(
             summary = "Retrieve a list of all users",
-            description = "Get a list of all users",
+            description = "Get a list of all users, filtered by name and username; see ListFilters",
             tags = { "users", "get" })
     @ApiResponses({
             @ApiResponse(responseCode = "200", content =
@@ -40,10 +53,26 @@ public class UserController {
                             mediaType = "application/json")})
     })
     @GetMapping
-    public List<User> findAll (@RequestParam(required = false) String name,
-                               @RequestParam(required = false) String order,
+    public List<User> findAll (@RequestParam(required = false) String order,
                                @RequestParam(defaultValue = "0") int page,
-                               @RequestParam(defaultValue = "5") int size) {
+                               @RequestParam(defaultValue = "5") int size,
+                               @Parameter(description = "cursor from the X-Next-Cursor header; pass it empty to start paging by cursor")
+                               @RequestParam(required = false) String after,
+                               @Parameter(description = "filters such as name=Ann,Bob")
+                               @RequestParam MultiValueMap<String, String> filters,
+                               HttpServletResponse response)
+            throws InvalidCursorException, InvalidFilterException {
+        Specification<User> filter = ListFilters.USERS.compile(filters, order);
+
+        if (after != null) {
+            Slice<User> sliceUsers = keysetPager.findAll(User.class, filter, order, after, size);
+            String next = keysetPager.nextCursor(sliceUsers, order);
+            if (next != null) {
+                response.setHeader(KeysetPager.NEXT_CURSOR_HEADER, next);
+            }
+            return sliceUsers.getContent();
+        }
+
         Pageable paging;
 
         if (order != null) {
@@ -58,14 +87,7 @@ public class UserController {
             paging = PageRequest.of(page, size);
         }
 
-        Page<User> pageUsers;
-
-        if (name == null) {
-            pageUsers = userRepository.findAll(paging);
-        }
-        else {
-            pageUsers = userRepository.findByName(name, paging);
-        }
+        Slice<User> pageUsers = keysetPager.findAll(User.class, filter, paging);
         return pageUsers.getContent();
     }
 
@@ -103,11 +125,8 @@ public class UserController {
             @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())})
     })
     @PostMapping
-    public User createUser(@RequestBody User user) {
-        User newUser = userRepository.save(
-                new User(user.getUsername(), user.getName(), user.getAvatarUrl(), user.getWebUrl())
-        );
-        return newUser;
+    public User createUser(@Valid @RequestBody User user) throws UserConflictException {
+        return userRepository.upsertAll(List.of(user)).get(user.getUsername());
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package aiss.gitminer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDate;
+
+/**
+ * Activity of a project on a day (UTC), or in the week starting on that Monday.
+ */
+public record ActivityDto(
+        @JsonProperty("day") LocalDate day,
+        @JsonProperty("commits") long commits,
+        @JsonProperty("issues_opened") long issuesOpened,
+        @JsonProperty("issues_closed") long issuesClosed,
+        @JsonProperty("comments") long comments) {
+}
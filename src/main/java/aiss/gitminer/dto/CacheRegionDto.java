@@ -0,0 +1,19 @@
+package aiss.gitminer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Counters of a second-level or query cache region since startup or the last reset.
+ */
+public record CacheRegionDto(
+        @JsonProperty("region") String region,
+        @JsonProperty("hits") long hits,
+        @JsonProperty("misses") long misses,
+        @JsonProperty("puts") long puts,
+        @JsonProperty("hit_ratio") double hitRatio) {
+
+    public static CacheRegionDto of(String region, long hits, long misses, long puts) {
+        return new CacheRegionDto(region, hits, misses, puts,
+                hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+    }
+}
@@ -0,0 +1,41 @@
+package aiss.gitminer.dto;
+
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.User;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Read view of an issue. The comments are only present when they were asked to be expanded,
+ * and the comment count only in summaries.
+ */
+public record IssueDto(
+        @JsonProperty("id") String id,
+        @JsonProperty("title") String title,
+        @JsonProperty("description") String description,
+        @JsonProperty("state") String state,
+        @JsonProperty("created_at") Instant createdAt,
+        @JsonProperty("updated_at") Instant updatedAt,
+        @JsonProperty("closed_at") Instant closedAt,
+        @JsonProperty("labels") List<String> labels,
+        @JsonProperty("author") User author,
+        @JsonProperty("assignee") User assignee,
+        @JsonProperty("votes") Integer votes,
+        @JsonProperty("comment_count") @JsonInclude(JsonInclude.Include.NON_NULL) Long commentCount,
+        @JsonProperty("comments") @JsonInclude(JsonInclude.Include.NON_NULL) List<Comment> comments) {
+
+    public static IssueDto of(Issue issue, List<String> labels, List<Comment> comments) {
+        return new IssueDto(issue.getId(), issue.getTitle(), issue.getDescription(), issue.getState(),
+                issue.getCreatedAt(), issue.getUpdatedAt(), issue.getClosedAt(), labels,
+                issue.getAuthor(), issue.getAssignee(), issue.getVotes(), null, comments);
+    }
+
+    public IssueDto withCommentCount(long commentCount) {
+        return new IssueDto(id, title, description, state, createdAt, updatedAt, closedAt, labels,
+                author, assignee, votes, commentCount, comments);
+    }
+}
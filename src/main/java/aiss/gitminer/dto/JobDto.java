@@ -0,0 +1,23 @@
+package aiss.gitminer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * State of an asynchronous ingestion job. The received counts are known when the payload is
+ * accepted, the stored ones once the worker has written it, since it is written in one transaction.
+ */
+public record JobDto(
+        @JsonProperty("id") String id,
+        @JsonProperty("type") String type,
+        @JsonProperty("status") String status,
+        @JsonProperty("submitted_at") Instant submittedAt,
+        @JsonProperty("started_at") Instant startedAt,
+        @JsonProperty("finished_at") Instant finishedAt,
+        @JsonProperty("received") Map<String, Integer> received,
+        @JsonProperty("stored") Map<String, Integer> stored,
+        @JsonProperty("resource") String resource,
+        @JsonProperty("error") String error) {
+}
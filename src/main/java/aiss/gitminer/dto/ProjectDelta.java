@@ -0,0 +1,20 @@
+package aiss.gitminer.dto;
+
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Changes of a project since the previous sync. Commits and issues are added or updated by id,
+ * and the comments of each issue listed are merged into it; issues whose comments did not change
+ * may leave them out. Removals are given by id.
+ */
+public record ProjectDelta(
+        @JsonProperty("commits") List<Commit> commits,
+        @JsonProperty("issues") List<Issue> issues,
+        @JsonProperty("removed_commits") List<String> removedCommits,
+        @JsonProperty("removed_issues") List<String> removedIssues,
+        @JsonProperty("removed_comments") List<String> removedComments) {
+}
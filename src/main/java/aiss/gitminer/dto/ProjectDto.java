@@ -0,0 +1,34 @@
+package aiss.gitminer.dto;
+
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Project;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Read view of a project. Commits and issues are only present when they were asked to be expanded,
+ * and the counts only in summaries.
+ */
+public record ProjectDto(
+        @JsonProperty("id") String id,
+        @JsonProperty("name") String name,
+        @JsonProperty("web_url") String webUrl,
+        @JsonProperty("commit_count") @JsonInclude(JsonInclude.Include.NON_NULL) Long commitCount,
+        @JsonProperty("open_issue_count") @JsonInclude(JsonInclude.Include.NON_NULL) Long openIssueCount,
+        @JsonProperty("closed_issue_count") @JsonInclude(JsonInclude.Include.NON_NULL) Long closedIssueCount,
+        @JsonProperty("comment_count") @JsonInclude(JsonInclude.Include.NON_NULL) Long commentCount,
+        @JsonProperty("commits") @JsonInclude(JsonInclude.Include.NON_NULL) List<Commit> commits,
+        @JsonProperty("issues") @JsonInclude(JsonInclude.Include.NON_NULL) List<IssueDto> issues) {
+
+    public static ProjectDto of(Project project, List<Commit> commits, List<IssueDto> issues) {
+        return new ProjectDto(project.getId(), project.getName(), project.getWebUrl(),
+                null, null, null, null, commits, issues);
+    }
+
+    public ProjectDto withCounts(long commitCount, long openIssueCount, long closedIssueCount, long commentCount) {
+        return new ProjectDto(id, name, webUrl, commitCount, openIssueCount, closedIssueCount, commentCount,
+                commits, issues);
+    }
+}
@@ -0,0 +1,42 @@
+package aiss.gitminer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Contributor and activity statistics of a project. Weeks start on Monday and days are in UTC;
+ * only weeks with some activity are listed.
+ */
+public record ProjectStatsDto(
+        @JsonProperty("project_id") String projectId,
+        @JsonProperty("commits") long commits,
+        @JsonProperty("issues") long issues,
+        @JsonProperty("comments") long comments,
+        @JsonProperty("mean_hours_to_close") Double meanHoursToClose,
+        @JsonProperty("commits_per_author") List<AuthorCount> commitsPerAuthor,
+        @JsonProperty("comments_per_author") List<AuthorCount> commentsPerAuthor,
+        @JsonProperty("issues_per_state") List<StateCount> issuesPerState,
+        @JsonProperty("weekly_activity") List<WeekActivity> weeklyActivity) {
+
+    public record AuthorCount(
+            @JsonProperty("author") String author,
+            @JsonProperty("count") long count) {
+    }
+
+    public record StateCount(
+            @JsonProperty("state") String state,
+            @JsonProperty("issues") long issues,
+            @JsonProperty("votes") long votes,
+            @JsonProperty("mean_votes") Double meanVotes) {
+    }
+
+    public record WeekActivity(
+            @JsonProperty("week") LocalDate week,
+            @JsonProperty("commits") long commits,
+            @JsonProperty("issues_opened") long issuesOpened,
+            @JsonProperty("issues_closed") long issuesClosed,
+            @JsonProperty("comments") long comments) {
+    }
+}
@@ -0,0 +1,23 @@
+package aiss.gitminer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * Outcome of a project sync. The watermark is the latest timestamp stored for the project, from
+ * which the miner can compute the next delta.
+ */
+public record ProjectSyncDto(
+        @JsonProperty("watermark") Instant watermark,
+        @JsonProperty("commits") Counts commits,
+        @JsonProperty("issues") Counts issues,
+        @JsonProperty("comments") Counts comments) {
+
+    public record Counts(
+            @JsonProperty("added") int added,
+            @JsonProperty("updated") int updated,
+            @JsonProperty("unchanged") int unchanged,
+            @JsonProperty("removed") int removed) {
+    }
+}
@@ -0,0 +1,32 @@
+package aiss.gitminer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Outcome of comparing the activity rollups with counts taken from the commit, issue and comment
+ * tables. Only the first mismatches are listed; counts are null for a row missing on that side.
+ */
+public record RollupCheckDto(
+        @JsonProperty("project_id") String projectId,
+        @JsonProperty("rows") long rows,
+        @JsonProperty("mismatched") long mismatched,
+        @JsonProperty("mismatches") List<Mismatch> mismatches) {
+
+    public record Mismatch(
+            @JsonProperty("project_id") String projectId,
+            @JsonProperty("day") LocalDate day,
+            @JsonProperty("author") String author,
+            @JsonProperty("expected") Counts expected,
+            @JsonProperty("stored") Counts stored) {
+    }
+
+    public record Counts(
+            @JsonProperty("commits") long commits,
+            @JsonProperty("issues_opened") long issuesOpened,
+            @JsonProperty("issues_closed") long issuesClosed,
+            @JsonProperty("comments") long comments) {
+    }
+}
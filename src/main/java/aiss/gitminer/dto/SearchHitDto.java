@@ -0,0 +1,21 @@
+package aiss.gitminer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * A commit, issue or comment matching a search, with the fields stored in the index. The excerpt
+ * is the start of the message, description or body.
+ */
+public record SearchHitDto(
+        @JsonProperty("type") String type,
+        @JsonProperty("id") String id,
+        @JsonProperty("project_id") String projectId,
+        @JsonProperty("author") String author,
+        @JsonProperty("state") String state,
+        @JsonProperty("date") Instant date,
+        @JsonProperty("title") String title,
+        @JsonProperty("excerpt") String excerpt,
+        @JsonProperty("score") float score) {
+}
@@ -0,0 +1,15 @@
+package aiss.gitminer.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * One page of search hits, best first. Past a thousand matches the total is only counted up to
+ * that, and total_exact is false.
+ */
+public record SearchResultsDto(
+        @JsonProperty("total") long total,
+        @JsonProperty("total_exact") boolean totalExact,
+        @JsonProperty("hits") List<SearchHitDto> hits) {
+}
@@ -0,0 +1,12 @@
+package aiss.gitminer.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Invalid bulk payload")
+public class InvalidBulkPayloadException extends Exception {
+
+    public InvalidBulkPayloadException(String message) {
+        super(message);
+    }
+}
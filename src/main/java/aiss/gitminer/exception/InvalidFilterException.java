@@ -0,0 +1,12 @@
+package aiss.gitminer.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Invalid filter or order")
+public class InvalidFilterException extends Exception {
+
+    public InvalidFilterException(String message) {
+        super(message);
+    }
+}
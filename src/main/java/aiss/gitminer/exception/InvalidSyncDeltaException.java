@@ -0,0 +1,12 @@
+package aiss.gitminer.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "Invalid sync delta")
+public class InvalidSyncDeltaException extends Exception {
+
+    public InvalidSyncDeltaException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package aiss.gitminer.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "User id taken by another username")
+public class UserConflictException extends Exception {
+
+    public UserConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,108 @@
+package aiss.gitminer.model;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Activity of an author in a project on one day (UTC), kept up to date by ActivityRollups so that
+ * time series are read from here instead of being counted over the commit, issue and comment
+ * tables. Authors are commit author names and issue or comment usernames, empty when unknown.
+ */
+@Entity
+@IdClass(ActivityRollup.Key.class)
+@Table(name = "activity_rollup")
+public class ActivityRollup {
+
+    @Id
+    @Column(name = "projectId")
+    private String projectId;
+
+    @Id
+    @Column(name = "activityDay")
+    private LocalDate day;
+
+    @Id
+    private String author;
+
+    private long commits;
+
+    private long issuesOpened;
+
+    private long issuesClosed;
+
+    private long comments;
+
+    public ActivityRollup() {
+    }
+
+    public String getProjectId() {
+        return projectId;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public long getCommits() {
+        return commits;
+    }
+
+    public long getIssuesOpened() {
+        return issuesOpened;
+    }
+
+    public long getIssuesClosed() {
+        return issuesClosed;
+    }
+
+    public long getComments() {
+        return comments;
+    }
+
+    public static class Key implements Serializable {
+
+        private String projectId;
+
+        private LocalDate day;
+
+        private String author;
+
+        public Key() {
+        }
+
+        public Key(String projectId, LocalDate day, String author) {
+            this.projectId = projectId;
+            this.day = day;
+            this.author = author;
+        }
+
+        public String getProjectId() {
+            return projectId;
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        public String getAuthor() {
+            return author;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && Objects.equals(projectId, key.projectId)
+                    && Objects.equals(day, key.day) && Objects.equals(author, key.author);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(projectId, day, author);
+        }
+    }
+}
@@ -1,16 +1,32 @@
 
 package aiss.gitminer.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.annotation.Generated;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import java.time.Instant;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 @Entity
-@Table(name = "Comment")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "comment")
+@EntityListeners({CommentFingerprintListener.class, SearchIndexListener.class})
+@Table(name = "Comment", indexes = {
+        @Index(name = "idx_comment_issue_created", columnList = "issueId, createdAt"),
+        @Index(name = "idx_comment_fingerprint", columnList = "fingerprint"),
+        @Index(name = "idx_comment_created", columnList = "createdAt"),
+        @Index(name = "idx_comment_author", columnList = "author_id")
+})
 public class Comment {
 
     @Id
@@ -24,19 +40,35 @@ public class Comment {
 
     @JsonProperty("author")
     @JoinColumn(name = "author_id", referencedColumnName = "id")
-    @OneToOne(cascade=CascadeType.ALL)
+    @ManyToOne
     private User author;
 
     @JsonProperty("created_at")
-    @NotEmpty(message = "The field created_at cannot be empty.")
-    private String createdAt;
+    @NotNull(message = "The field created_at cannot be empty.")
+    private Instant createdAt;
 
     @JsonProperty("updated_at")
-    private String updatedAt;
+    private Instant updatedAt;
+
+    // Read-only view of the join column owned by Issue.comments
+    @JsonIgnore
+    @Column(name = "issueId", insertable = false, updatable = false)
+    private String issueId;
+
+    // Hash of body, created_at and author used to detect re-ingested comments. Not unique: distinct
+    // comments with the same content are kept, only POST /comments and sync skip them
+    @JsonIgnore
+    @Column(length = 32)
+    private String fingerprint;
+
+    // Incremented on every change, it is what the ETag of the resource is derived from
+    @JsonIgnore
+    @Version
+    private Long version;
 
     public Comment() {}
 
-    public Comment(String id, String body, User author, String createdAt, String updatedAt) {
+    public Comment(String id, String body, User author, Instant createdAt, Instant updatedAt) {
         this.id = id;
         this.body = body;
         this.author = author;
@@ -68,22 +100,58 @@ public class Comment {
         this.author = author;
     }
 
-    public String getCreatedAt() {
+    public Instant getCreatedAt() {
         return createdAt;
     }
 
-    public void setCreatedAt(String createdAt) {
+    public void setCreatedAt(Instant createdAt) {
         this.createdAt = createdAt;
     }
 
-    public String getUpdatedAt() {
+    public Instant getUpdatedAt() {
         return updatedAt;
     }
 
-    public void setUpdatedAt(String updatedAt) {
+    public void setUpdatedAt(Instant updatedAt) {
         this.updatedAt = updatedAt;
     }
 
+    public String getIssueId() {
+        return issueId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateFingerprint() {
+        fingerprint = contentFingerprint();
+    }
+
+    public String contentFingerprint() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : new Object[]{body, createdAt, author == null ? null : author.getUsername()}) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            // The first 128 bits are plenty to tell comments apart
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,20 @@
+package aiss.gitminer.model;
+
+import aiss.gitminer.service.CommentFingerprintIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+import javax.persistence.PostPersist;
+
+// Keeps the in-memory fingerprint index up to date whatever the path a comment is saved through
+public class CommentFingerprintListener {
+
+    @Autowired
+    @Lazy
+    CommentFingerprintIndex commentFingerprintIndex;
+
+    @PostPersist
+    public void commentPersisted(Comment comment) {
+        commentFingerprintIndex.add(comment.getFingerprint());
+    }
+}
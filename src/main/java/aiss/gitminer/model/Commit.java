@@ -1,14 +1,25 @@
 package aiss.gitminer.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import org.springframework.transaction.reactive.GenericReactiveTransaction;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import java.time.Instant;
 
 @Entity
-@Table(name = "Commit")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "commit")
+@EntityListeners(SearchIndexListener.class)
+@Table(name = "Commit", indexes = {
+        @Index(name = "idx_commit_authored_date", columnList = "authoredDate"),
+        @Index(name = "idx_commit_author_name", columnList = "authorName"),
+        @Index(name = "idx_commit_project", columnList = "projectId"),
+        @Index(name = "idx_commit_project_authored", columnList = "projectId, authoredDate"),
+        @Index(name = "idx_commit_project_id", columnList = "projectId, id")
+})
 public class Commit {
 
     @Id
@@ -30,18 +41,23 @@ public class Commit {
     private String authorEmail;
 
     @JsonProperty("authored_date")
-    @NotEmpty(message = "Author date cannot be empty.")
-    private String authoredDate;
+    @NotNull(message = "Author date cannot be empty.")
+    private Instant authoredDate;
 
     @JsonProperty("web_url")
     @NotEmpty(message = "URL cannot be empty." +
             "")
     private String webUrl;
 
+    // Read-only view of the join column owned by Project.commits
+    @JsonIgnore
+    @Column(name = "projectId", insertable = false, updatable = false)
+    private String projectId;
+
     public Commit() {
     }
 
-    public Commit(String title, String message, String authorName, String authorEmail, String authoredDate, String webUrl) {
+    public Commit(String title, String message, String authorName, String authorEmail, Instant authoredDate, String webUrl) {
         this.title = title;
         this.message = message;
         this.authorName = authorName;
@@ -90,11 +106,11 @@ public class Commit {
         this.authorEmail = authorEmail;
     }
 
-    public String getAuthoredDate() {
+    public Instant getAuthoredDate() {
         return authoredDate;
     }
 
-    public void setAuthoredDate(String authoredDate) {
+    public void setAuthoredDate(Instant authoredDate) {
         this.authoredDate = authoredDate;
     }
 
@@ -106,6 +122,10 @@ public class Commit {
         this.webUrl = webUrl;
     }
 
+    public String getProjectId() {
+        return projectId;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
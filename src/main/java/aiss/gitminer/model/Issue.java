@@ -1,18 +1,34 @@
 
 package aiss.gitminer.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.annotation.Generated;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import java.time.Instant;
 import java.util.IdentityHashMap;
 import java.util.List;
 
 @Entity
-@Table(name = "Issue")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "issue")
+@EntityListeners(SearchIndexListener.class)
+@Table(name = "Issue", indexes = {
+        @Index(name = "idx_issue_created", columnList = "createdAt"),
+        @Index(name = "idx_issue_closed", columnList = "closedAt"),
+        @Index(name = "idx_issue_state", columnList = "state"),
+        @Index(name = "idx_issue_author", columnList = "author_id"),
+        @Index(name = "idx_issue_project", columnList = "projectId"),
+        @Index(name = "idx_issue_project_created", columnList = "projectId, createdAt"),
+        @Index(name = "idx_issue_project_closed", columnList = "projectId, closedAt"),
+        @Index(name = "idx_issue_project_id", columnList = "projectId, id")
+})
 public class Issue {
 
     @Id
@@ -30,27 +46,31 @@ public class Issue {
     private String state;
 
     @JsonProperty("created_at")
-    private String createdAt;
+    private Instant createdAt;
 
     @JsonProperty("updated_at")
-    private String updatedAt;
+    private Instant updatedAt;
 
     @JsonProperty("closed_at")
-    private String closedAt;
+    private Instant closedAt;
 
     @JsonProperty("labels")
     @ElementCollection
+    @CollectionTable(name = "issue_labels", indexes = {
+            @Index(name = "idx_issue_labels_issue", columnList = "issue_id"),
+            @Index(name = "idx_issue_labels_label", columnList = "labels")
+    })
     private List<String> labels;
 
     @JsonProperty("author")
     //@NotEmpty(message = "The author of the issue cannot be empty")
     @JoinColumn(name = "author_id",referencedColumnName = "id")
-    @OneToOne(cascade=CascadeType.ALL)
+    @ManyToOne
     private User author;
 
     @JsonProperty("assignee")
     @JoinColumn(name = "assignee_id",referencedColumnName = "id")
-    @OneToOne(cascade=CascadeType.ALL)
+    @ManyToOne
     private User assignee;
 
     @JsonProperty("votes")
@@ -61,10 +81,20 @@ public class Issue {
     @JoinColumn(name = "issueId")
     private List<Comment> comments;
 
+    // Read-only view of the join column owned by Project.issues
+    @JsonIgnore
+    @Column(name = "projectId", insertable = false, updatable = false)
+    private String projectId;
+
+    // Incremented on every change, it is what the ETag of the resource is derived from
+    @JsonIgnore
+    @Version
+    private Long version;
+
     public Issue() {}
 
-    public Issue(String title, String description, String state, String createdAt,
-                 String updatedAt, String closedAt, List<String> labels, User author,
+    public Issue(String title, String description, String state, Instant createdAt,
+                 Instant updatedAt, Instant closedAt, List<String> labels, User author,
                  User assignee, Integer votes, List<Comment> comments) {
         this.title = title;
         this.description = description;
@@ -111,27 +141,27 @@ public class Issue {
         this.state = state;
     }
 
-    public String getCreatedAt() {
+    public Instant getCreatedAt() {
         return createdAt;
     }
 
-    public void setCreatedAt(String createdAt) {
+    public void setCreatedAt(Instant createdAt) {
         this.createdAt = createdAt;
     }
 
-    public String getUpdatedAt() {
+    public Instant getUpdatedAt() {
         return updatedAt;
     }
 
-    public void setUpdatedAt(String updatedAt) {
+    public void setUpdatedAt(Instant updatedAt) {
         this.updatedAt = updatedAt;
     }
 
-    public String getClosedAt() {
+    public Instant getClosedAt() {
         return closedAt;
     }
 
-    public void setClosedAt(String closedAt) {
+    public void setClosedAt(Instant closedAt) {
         this.closedAt = closedAt;
     }
 
@@ -175,6 +205,18 @@ public class Issue {
         this.comments = comments;
     }
 
+    public String getProjectId() {
+        return projectId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
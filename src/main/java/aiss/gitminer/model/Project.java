@@ -2,7 +2,9 @@
 
 package aiss.gitminer.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
@@ -11,7 +13,11 @@ import java.util.List;
 
 
 @Entity
-@Table(name = "Project")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "project")
+@Table(name = "Project", indexes = {
+        @Index(name = "idx_project_name", columnList = "name")
+})
 public class Project {
 
     @Id
@@ -36,6 +42,11 @@ public class Project {
     @JoinColumn(name = "projectId")
     private List<Issue> issues;
 
+    // Incremented on every change, it is what the ETag of the resource is derived from
+    @JsonIgnore
+    @Version
+    private Long version;
+
     public Project(String name, String webUrl) {
         this.name = name;
         this.webUrl = webUrl;
@@ -95,6 +106,14 @@ public class Project {
         this.issues = issues;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,24 @@
+package aiss.gitminer.model;
+
+import aiss.gitminer.service.SearchIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+// Queues the search index update of commits, issues and comments whatever the path they are written through
+public class SearchIndexListener {
+
+    @Autowired
+    @Lazy
+    SearchIndex searchIndex;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void written(Object entity) {
+        searchIndex.changed(entity);
+    }
+}
@@ -4,14 +4,21 @@ package aiss.gitminer.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.annotation.Generated;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 
 @Entity
-@Table(name = "GMUser")     // Watch out: User is a reserved keyword in H2
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "user")
+@Table(name = "GMUser", indexes = {     // Watch out: User is a reserved keyword in H2
+        @Index(name = "idx_user_username", columnList = "username", unique = true),
+        @Index(name = "idx_user_name", columnList = "name")
+})
 public class User {
 
     @Id
@@ -0,0 +1,29 @@
+package aiss.gitminer.repository;
+
+import aiss.gitminer.model.ActivityRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ActivityRollupRepository extends JpaRepository<ActivityRollup, ActivityRollup.Key> {
+
+    // Time series of a project: day, commits, issues opened, issues closed and comments
+    @Query("select r.day, sum(r.commits), sum(r.issuesOpened), sum(r.issuesClosed), sum(r.comments) " +
+            "from ActivityRollup r where r.projectId = :projectId and r.day between :since and :until " +
+            "group by r.day order by r.day")
+    List<Object[]> sumPerDay(@Param("projectId") String projectId, @Param("since") LocalDate since,
+                             @Param("until") LocalDate until);
+
+    @Query("select r.day, sum(r.commits), sum(r.issuesOpened), sum(r.issuesClosed), sum(r.comments) " +
+            "from ActivityRollup r where r.projectId = :projectId and r.author = :author " +
+            "and r.day between :since and :until group by r.day order by r.day")
+    List<Object[]> sumPerDayByAuthor(@Param("projectId") String projectId, @Param("author") String author,
+                                     @Param("since") LocalDate since, @Param("until") LocalDate until);
+
+    List<ActivityRollup> findByProjectId(String projectId);
+}
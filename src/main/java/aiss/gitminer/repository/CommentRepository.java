@@ -1,16 +1,98 @@
 package aiss.gitminer.repository;
 
 import aiss.gitminer.model.Comment;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FLUSH_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface CommentRepository extends JpaRepository <Comment, String> {
-    Page<Comment> findByAuthor(String author, Pageable pageable);
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @EntityGraph(attributePaths = "author")
+    Slice<Comment> findByIssueId(String issueId, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @EntityGraph(attributePaths = "author")
+    List<Comment> findByIssueIdIn(Collection<String> issueIds);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @EntityGraph(attributePaths = "author")
+    @Query("select c from Comment c where c.issueId in (select i.id from Issue i where i.projectId in :projectIds)")
+    List<Comment> findByIssueProjectIdIn(@Param("projectIds") Collection<String> projectIds);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("select c.issueId, count(c) from Comment c where c.issueId in :issueIds group by c.issueId")
+    List<Object[]> countPerIssue(@Param("issueIds") Collection<String> issueIds);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("select i.projectId, count(c) from Comment c, Issue i " +
+            "where c.issueId = i.id and i.projectId in :projectIds group by i.projectId")
+    List<Object[]> countPerProject(@Param("projectIds") Collection<String> projectIds);
+
+    @EntityGraph(attributePaths = "author")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select c from Comment c where c.issueId in (select i.id from Issue i where i.projectId = :projectId) " +
+            "order by c.issueId, c.createdAt")
+    Stream<Comment> streamByIssueProjectId(@Param("projectId") String projectId);
+
+    Optional<Comment> findByBodyAndCreatedAt(String body, Instant createdAt);
+
+    Optional<Comment> findFirstByFingerprint(String fingerprint);
+
+    @Query("select c.fingerprint from Comment c where c.fingerprint is not null")
+    Stream<String> streamAllFingerprints();
+
+    @Query("select max(coalesce(c.updatedAt, c.createdAt)) from Comment c " +
+            "where c.issueId in (select i.id from Issue i where i.projectId = :projectId)")
+    Instant findLatestTimestamp(@Param("projectId") String projectId);
+
+    // Statistics of a project: author username and comments, busiest first
+    @Query("select a.username, count(c) from Comment c left join c.author a " +
+            "where c.issueId in (select i.id from Issue i where i.projectId = :projectId) " +
+            "group by a.username order by count(c) desc, a.username")
+    List<Object[]> countPerAuthor(@Param("projectId") String projectId);
+
+    @Query("select c.id from Comment c where c.issueId in (select i.id from Issue i where i.projectId = :projectId)")
+    List<String> findIdsByProjectId(@Param("projectId") String projectId);
+
+    @Query("select c.id from Comment c where c.issueId in :issueIds")
+    List<String> findIdsByIssueIdIn(@Param("issueIds") Collection<String> issueIds);
+
+    // Rows of the search index: id, project of the issue, author, date and body
+    @Query("select c.id, i.projectId, a.username, c.createdAt, c.body " +
+            "from Comment c left join c.author a left join Issue i on i.id = c.issueId where c.id in :ids")
+    List<Object[]> findSearchRowsByIdIn(@Param("ids") Collection<String> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select c.id, i.projectId, a.username, c.createdAt, c.body " +
+            "from Comment c left join c.author a left join Issue i on i.id = c.issueId")
+    Stream<Object[]> streamSearchRows();
+
+    // One row of version and updated_at, none if the comment does not exist
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("select c.version, c.updatedAt from Comment c where c.id = :id")
+    List<Object[]> findVersionById(@Param("id") String id);
 
-    Optional<Comment> findByBodyAndCreatedAt(String body, String createdAt);
+    // Rows of id, version and issue. Read while the payload is being attached, which must not flush it half done
+    @QueryHints(@QueryHint(name = HINT_FLUSH_MODE, value = "COMMIT"))
+    @Query("select c.id, c.version, c.issueId from Comment c where c.id in :ids")
+    List<Object[]> findVersionsByIdIn(@Param("ids") Collection<String> ids);
 }
\ No newline at end of file
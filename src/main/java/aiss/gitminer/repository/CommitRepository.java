@@ -4,10 +4,52 @@ import aiss.gitminer.model.Commit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
 public interface CommitRepository extends JpaRepository<Commit, String> {
     Page<Commit> findById (String id, Pageable pageable);
-    Page<Commit> findByAuthorName(String authorName, Pageable paging);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<Commit> findByProjectIdIn(Collection<String> projectIds);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("select c.projectId, count(c) from Commit c where c.projectId in :projectIds group by c.projectId")
+    List<Object[]> countPerProject(@Param("projectIds") Collection<String> projectIds);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    Stream<Commit> streamByProjectIdOrderById(String projectId);
+
+    @Query("select max(c.authoredDate) from Commit c where c.projectId = :projectId")
+    Instant findLatestTimestamp(@Param("projectId") String projectId);
+
+    // Statistics of a project: author name and commits, busiest first
+    @Query("select c.authorName, count(c) from Commit c where c.projectId = :projectId " +
+            "group by c.authorName order by count(c) desc, c.authorName")
+    List<Object[]> countPerAuthor(@Param("projectId") String projectId);
+
+    @Query("select c.id from Commit c where c.projectId = :projectId")
+    List<String> findIdsByProjectId(@Param("projectId") String projectId);
+
+    // Rows of the search index: id, project, author, date, title and message
+    @Query("select c.id, c.projectId, c.authorName, c.authoredDate, c.title, c.message from Commit c where c.id in :ids")
+    List<Object[]> findSearchRowsByIdIn(@Param("ids") Collection<String> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select c.id, c.projectId, c.authorName, c.authoredDate, c.title, c.message from Commit c")
+    Stream<Object[]> streamSearchRows();
 }
\ No newline at end of file
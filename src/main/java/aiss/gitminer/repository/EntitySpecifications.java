@@ -0,0 +1,52 @@
+package aiss.gitminer.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import java.time.Instant;
+
+/**
+ * Building blocks for the list endpoint filters. A filter whose value is missing is null, which
+ * Specification.where and Specification.and simply ignore.
+ */
+public final class EntitySpecifications {
+
+    private EntitySpecifications() {
+    }
+
+    public static <T> Specification<T> equal(String attribute, Object value) {
+        if (value == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(path(root, attribute), value);
+    }
+
+    // since is inclusive and until exclusive, so consecutive windows do not overlap
+    public static <T> Specification<T> between(String attribute, Instant since, Instant until) {
+        if (since == null && until == null) {
+            return null;
+        }
+        return (root, query, cb) -> {
+            Path<Instant> path = path(root, attribute);
+            if (since == null) {
+                return cb.lessThan(path, until);
+            }
+            if (until == null) {
+                return cb.greaterThanOrEqualTo(path, since);
+            }
+            return cb.and(cb.greaterThanOrEqualTo(path, since), cb.lessThan(path, until));
+        };
+    }
+
+    // Nested attributes such as "author.name" are reached through inner joins
+    static <T, Y> Path<Y> path(Root<T> root, String attribute) {
+        String[] parts = attribute.split("\\.");
+        From<?, ?> from = root;
+        for (int i = 0; i < parts.length - 1; i++) {
+            from = from.join(parts[i]);
+        }
+        return from.get(parts[parts.length - 1]);
+    }
+}
@@ -3,12 +3,99 @@ package aiss.gitminer.repository;
 import aiss.gitminer.model.Issue;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FLUSH_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
 public interface IssueRepository extends JpaRepository<Issue, String> {
 
-    Page<Issue> findByState(String state, Pageable paging);
     Page<Issue> findByAuthorId(String id, Pageable paging);
+
+    @EntityGraph(attributePaths = {"author", "assignee"})
+    Optional<Issue> findDetailedById(String id);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @EntityGraph(attributePaths = {"author", "assignee"})
+    List<Issue> findByProjectIdIn(Collection<String> projectIds);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("select i.id, l from Issue i join i.labels l where i.id in :issueIds")
+    List<Object[]> findLabelsByIssueIdIn(@Param("issueIds") Collection<String> issueIds);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("select i.id, l from Issue i join i.labels l where i.projectId in :projectIds")
+    List<Object[]> findLabelsByProjectIdIn(@Param("projectIds") Collection<String> projectIds);
+
+    // Rows of project id, closed issues and total issues
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("select i.projectId, sum(case when i.state = 'closed' then 1 else 0 end), count(i) from Issue i " +
+            "where i.projectId in :projectIds group by i.projectId")
+    List<Object[]> countStatesPerProject(@Param("projectIds") Collection<String> projectIds);
+
+    @EntityGraph(attributePaths = {"author", "assignee"})
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    Stream<Issue> streamByProjectIdOrderById(String projectId);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select i.id, l from Issue i join i.labels l where i.projectId = :projectId order by i.id")
+    Stream<Object[]> streamLabelsByProjectId(@Param("projectId") String projectId);
+
+    @Query("select max(coalesce(i.updatedAt, i.createdAt)) from Issue i where i.projectId = :projectId")
+    Instant findLatestTimestamp(@Param("projectId") String projectId);
+
+    // Statistics of a project: state, issues, total and mean votes
+    @Query("select i.state, count(i), sum(i.votes), avg(i.votes) from Issue i where i.projectId = :projectId " +
+            "group by i.state order by i.state")
+    List<Object[]> countPerState(@Param("projectId") String projectId);
+
+    // Statistics of a project: mean number of seconds from opening to closing, null without closed issues
+    @Query("select avg(function('DATEDIFF', 'SECOND', i.createdAt, i.closedAt)) from Issue i " +
+            "where i.projectId = :projectId and i.createdAt is not null and i.closedAt is not null")
+    Double findMeanSecondsToClose(@Param("projectId") String projectId);
+
+    @Query("select i.id from Issue i where i.projectId = :projectId")
+    List<String> findIdsByProjectId(@Param("projectId") String projectId);
+
+    // Rows of the search index: id, project, author, state, date, title and description
+    @Query("select i.id, i.projectId, a.username, i.state, i.createdAt, i.title, i.description " +
+            "from Issue i left join i.author a where i.id in :ids")
+    List<Object[]> findSearchRowsByIdIn(@Param("ids") Collection<String> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select i.id, i.projectId, a.username, i.state, i.createdAt, i.title, i.description " +
+            "from Issue i left join i.author a")
+    Stream<Object[]> streamSearchRows();
+
+    // One row of version and updated_at of the issue, followed by the last update of its comments.
+    // No row if the issue does not exist.
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("select i.version, i.updatedAt, max(coalesce(c.updatedAt, c.createdAt)) " +
+            "from Issue i left join Comment c on c.issueId = i.id where i.id = :id group by i.version, i.updatedAt")
+    List<Object[]> findVersionWithCommentsById(@Param("id") String id);
+
+    // Rows of id and project
+    @Query("select i.id, i.projectId from Issue i where i.id in :ids")
+    List<Object[]> findProjectIdsByIdIn(@Param("ids") Collection<String> ids);
+
+    // Read while the payload is being attached, which must not flush it half done
+    @QueryHints(@QueryHint(name = HINT_FLUSH_MODE, value = "COMMIT"))
+    @Query("select i.id, i.version from Issue i where i.id in :ids")
+    List<Object[]> findVersionsByIdIn(@Param("ids") Collection<String> ids);
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+package aiss.gitminer.repository;
+
+import aiss.gitminer.exception.InvalidFilterException;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.model.User;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.MultiValueMap;
+
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Compound filters of the list endpoints, written as query parameters. Each parameter names a
+ * field, values repeated or separated by commas match any of them, and all the fields given must
+ * match: state=opened,closed&label=bug&author=ann&since=2023-01-01T00:00:00Z. since (inclusive)
+ * and until (exclusive) bound the date of the entity.
+ *
+ * Only fields backed by an index can be filtered on, and ordering by an attribute without an
+ * index is refused unless an equality filter narrows the rows first: either would make the
+ * database read the whole table for every page. Anything else is an InvalidFilterException.
+ */
+public final class ListFilters<T> {
+
+    // Parameters of the list endpoints that are not filters
+    private static final Set<String> PAGING = Set.of("order", "page", "size", "after", "expand");
+
+    public static final ListFilters<Commit> COMMITS = new ListFilters<Commit>("authoredDate")
+            .equal("authorName", "authorName")
+            .equal("project", "projectId")
+            .sortable("id", "authoredDate", "authorName");
+
+    public static final ListFilters<Issue> ISSUES = new ListFilters<Issue>("createdAt")
+            .equal("state", "state")
+            .equal("author", "author.username")
+            .equal("project", "projectId")
+            .member("label", "labels")
+            .sortable("id", "createdAt", "closedAt", "state");
+
+    public static final ListFilters<Comment> COMMENTS = new ListFilters<Comment>("createdAt")
+            .equal("name", "author.name")
+            .equal("author", "author.username")
+            .equal("issue", "issueId")
+            .sortable("id", "createdAt");
+
+    public static final ListFilters<Project> PROJECTS = new ListFilters<Project>(null)
+            .equal("name", "name")
+            .sortable("id", "name");
+
+    public static final ListFilters<User> USERS = new ListFilters<User>(null)
+            .equal("name", "name")
+            .equal("username", "username")
+            .sortable("id", "name", "username");
+
+    private final String date;
+    private final Map<String, String> equalities = new LinkedHashMap<>();
+    private final Map<String, String> members = new LinkedHashMap<>();
+    private final Set<String> sortable = new HashSet<>();
+
+    private ListFilters(String date) {
+        this.date = date;
+    }
+
+    private ListFilters<T> equal(String field, String attribute) {
+        equalities.put(field, attribute);
+        return this;
+    }
+
+    // A value of the element collection attribute must be one of those given
+    private ListFilters<T> member(String field, String attribute) {
+        members.put(field, attribute);
+        return this;
+    }
+
+    private ListFilters<T> sortable(String... attributes) {
+        sortable.addAll(Arrays.asList(attributes));
+        return this;
+    }
+
+    /**
+     * Whether the query parameter is a filter of any of the lists. Unlike their values the names
+     * are few and fixed, so they can tag metrics.
+     */
+    public static boolean isFilter(String param) {
+        return Stream.of(COMMITS, ISSUES, COMMENTS, PROJECTS, USERS).anyMatch(filters -> filters.accepts(param));
+    }
+
+    private boolean accepts(String field) {
+        return equalities.containsKey(field) || members.containsKey(field)
+                || date != null && (field.equals("since") || field.equals("until"));
+    }
+
+    public Specification<T> compile(MultiValueMap<String, String> params, String order) throws InvalidFilterException {
+        return compile(params, order, false);
+    }
+
+    /**
+     * @param scoped whether the rows are already restricted by an indexed equality, such as the
+     *               project of the sub-resource lists
+     */
+    public Specification<T> compile(MultiValueMap<String, String> params, String order, boolean scoped)
+            throws InvalidFilterException {
+        Specification<T> filter = Specification.where(null);
+        boolean narrowed = scoped;
+        Instant since = null;
+        Instant until = null;
+
+        for (Map.Entry<String, List<String>> param : params.entrySet()) {
+            String field = param.getKey();
+            List<String> values = values(param.getValue());
+            if (PAGING.contains(field)) {
+                continue;
+            }
+            if (date != null && (field.equals("since") || field.equals("until"))) {
+                if (values.size() > 1) {
+                    throw new InvalidFilterException(field + " takes a single instant");
+                }
+                Instant instant = values.isEmpty() ? null : instant(field, values.get(0));
+                if (field.equals("since")) {
+                    since = instant;
+                } else {
+                    until = instant;
+                }
+            } else if (equalities.containsKey(field)) {
+                if (!values.isEmpty()) {
+                    filter = filter.and(in(equalities.get(field), values));
+                    narrowed = true;
+                }
+            } else if (members.containsKey(field)) {
+                if (!values.isEmpty()) {
+                    filter = filter.and(containsAny(members.get(field), values));
+                    narrowed = true;
+                }
+            } else {
+                throw new InvalidFilterException("Cannot filter on " + field + ", only on " + fields());
+            }
+        }
+        if (date != null) {
+            filter = filter.and(EntitySpecifications.between(date, since, until));
+        }
+
+        String attribute = order == null ? null : order.startsWith("-") ? order.substring(1) : order;
+        if (attribute != null && !sortable.contains(attribute) && !narrowed) {
+            throw new InvalidFilterException("Ordering by " + attribute + " needs a filter on one of "
+                    + equalities.keySet() + members.keySet() + ", or an order by one of " + sortable);
+        }
+        return filter;
+    }
+
+    private static <T> Specification<T> in(String attribute, List<String> values) {
+        if (values.size() == 1) {
+            return EntitySpecifications.equal(attribute, values.get(0));
+        }
+        return (root, query, cb) -> EntitySpecifications.<T, String>path(root, attribute).in(values);
+    }
+
+    // An uncorrelated subquery, so that the collection table is read through its value index
+    @SuppressWarnings("unchecked")
+    private static <T> Specification<T> containsAny(String attribute, List<String> values) {
+        return (root, query, cb) -> {
+            Subquery<String> matching = query.subquery(String.class);
+            Root<T> other = (Root<T>) matching.from(root.getJavaType());
+            Join<T, String> value = other.join(attribute);
+            matching.select(other.get("id")).where(value.in(values));
+            Path<String> id = root.get("id");
+            return id.in(matching);
+        };
+    }
+
+    private static List<String> values(List<String> params) {
+        List<String> values = new ArrayList<>();
+        for (String param : params) {
+            for (String value : param.split(",")) {
+                if (!value.isBlank()) {
+                    values.add(value.trim());
+                }
+            }
+        }
+        return values;
+    }
+
+    private static Instant instant(String field, String value) throws InvalidFilterException {
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new InvalidFilterException(field + " must be an instant such as 2023-01-01T00:00:00Z");
+        }
+    }
+
+    private String fields() {
+        Set<String> fields = new LinkedHashSet<>(equalities.keySet());
+        fields.addAll(members.keySet());
+        if (date != null) {
+            fields.addAll(List.of("since", "until"));
+        }
+        return String.join(", ", fields);
+    }
+}
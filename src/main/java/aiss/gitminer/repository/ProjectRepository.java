@@ -4,12 +4,26 @@ import aiss.gitminer.model.Project;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.util.Optional;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FLUSH_MODE;
+
 @Repository
 public interface ProjectRepository extends JpaRepository<Project, String> {
 
     Page<Project> findById (String id, Pageable pageable);
-    Page<Project> findByName(String name, Pageable paging);
+
+    // Also read while a payload is being attached, which must not flush it half done
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"), @QueryHint(name = HINT_FLUSH_MODE, value = "COMMIT")})
+    @Query("select p.version from Project p where p.id = :id")
+    Optional<Long> findVersionById(@Param("id") String id);
 
 }
\ No newline at end of file
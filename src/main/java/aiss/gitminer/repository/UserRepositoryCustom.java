@@ -0,0 +1,21 @@
+package aiss.gitminer.repository;
+
+import aiss.gitminer.exception.UserConflictException;
+import aiss.gitminer.model.User;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Inserts the users whose username is not stored yet and refreshes the profile fields of the
+     * others, with one lookup per chunk of usernames. Users without a username are ignored.
+     *
+     * @return the stored user for every username
+     * @throws UserConflictException if the id given with a new username is already the id of
+     *                               another user, in the database or in the same call; nothing is
+     *                               written then
+     */
+    Map<String, User> upsertAll(Collection<User> users) throws UserConflictException;
+}
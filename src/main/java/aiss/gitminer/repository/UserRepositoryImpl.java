@@ -0,0 +1,86 @@
+package aiss.gitminer.repository;
+
+import aiss.gitminer.exception.UserConflictException;
+import aiss.gitminer.model.User;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    // Keeps the IN lists well below the limits of the usual databases
+    private static final int CHUNK_SIZE = 500;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public Map<String, User> upsertAll(Collection<User> users) throws UserConflictException {
+        Map<String, User> incoming = new LinkedHashMap<>();
+        for (User user : users) {
+            if (user != null && user.getUsername() != null) {
+                incoming.putIfAbsent(user.getUsername(), user);
+            }
+        }
+
+        Map<String, User> stored = new HashMap<>();
+        List<String> usernames = new ArrayList<>(incoming.keySet());
+        for (int i = 0; i < usernames.size(); i += CHUNK_SIZE) {
+            entityManager.createQuery("select u from User u where u.username in :usernames", User.class)
+                    .setParameter("usernames", usernames.subList(i, Math.min(i + CHUNK_SIZE, usernames.size())))
+                    .getResultList()
+                    .forEach(user -> stored.put(user.getUsername(), user));
+        }
+
+        checkIds(incoming.values(), stored);
+
+        for (User user : incoming.values()) {
+            User existing = stored.get(user.getUsername());
+            if (existing == null) {
+                if (user.getId() == null) {
+                    user.setId(UUID.randomUUID().toString());
+                }
+                entityManager.persist(user);
+                stored.put(user.getUsername(), user);
+            } else {
+                if (user.getName() != null) {
+                    existing.setName(user.getName());
+                }
+                if (user.getAvatarUrl() != null) {
+                    existing.setAvatarUrl(user.getAvatarUrl());
+                }
+                if (user.getWebUrl() != null) {
+                    existing.setWebUrl(user.getWebUrl());
+                }
+            }
+        }
+        return stored;
+    }
+
+    // A new username must not come with the id of another user, which persist would reject
+    private void checkIds(Collection<User> incoming, Map<String, User> stored) throws UserConflictException {
+        Map<String, String> ids = new HashMap<>();
+        for (User user : incoming) {
+            if (user.getId() != null && !stored.containsKey(user.getUsername())) {
+                String other = ids.putIfAbsent(user.getId(), user.getUsername());
+                if (other != null) {
+                    throw new UserConflictException("Users " + other + " and " + user.getUsername() + " have the same id");
+                }
+            }
+        }
+        List<String> newIds = new ArrayList<>(ids.keySet());
+        for (int i = 0; i < newIds.size(); i += CHUNK_SIZE) {
+            List<Object[]> taken = entityManager.createQuery(
+                            "select u.id, u.username from User u where u.id in :ids", Object[].class)
+                    .setParameter("ids", newIds.subList(i, Math.min(i + CHUNK_SIZE, newIds.size())))
+                    .getResultList();
+            if (!taken.isEmpty()) {
+                throw new UserConflictException("User id " + taken.get(0)[0] + " belongs to " + taken.get(0)[1]
+                        + ", not to " + ids.get((String) taken.get(0)[0]));
+            }
+        }
+    }
+}
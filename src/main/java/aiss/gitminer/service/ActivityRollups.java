@@ -0,0 +1,352 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.dto.ActivityDto;
+import aiss.gitminer.dto.RollupCheckDto;
+import aiss.gitminer.exception.ProjectNotFoundException;
+import aiss.gitminer.model.ActivityRollup;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.repository.ActivityRollupRepository;
+import aiss.gitminer.repository.ProjectRepository;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.cache.CacheManager;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Activity per project, day and author, kept in the activity_rollup table.
+ *
+ * Writers describe the rows they are about to change in a {@link Change}: {@link #before} reads
+ * the days of the projects those rows count in, and {@link #after} reads them again once written
+ * and recounts the rows of the rollup in between, from the first to the last day touched in each
+ * project. Recounting instead of adding deltas keeps updates, moves between projects and deletes
+ * right without knowing the previous values, and since the counts are taken over an index on
+ * (project, date) the cost follows the days written, not the size of the project. Whole projects
+ * are recounted when their children are replaced.
+ *
+ * {@link #rebuild} recounts everything, for data loaded before the table existed or by other
+ * means, and {@link #check} compares the table with counts taken from the raw tables.
+ */
+@Service
+public class ActivityRollups {
+
+    private static final int IDS_PER_QUERY = 500;
+    private static final int MISMATCHES_LISTED = 100;
+    private static final LocalDate FIRST_DAY = LocalDate.of(1, 1, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(9999, 12, 31);
+
+    private static final String COLUMNS =
+            "project_id, activity_day, author, commits, issues_opened, issues_closed, comments";
+
+    // %1$s filters each part on a project and %2$s..%5$s on a range of days, see counts()
+    private static final String COUNTS = "select project_id, activity_day, author, sum(commits), " +
+            "sum(issues_opened), sum(issues_closed), sum(comments) from (" +
+            "select c.project_id, cast(c.authored_date as date) activity_day, coalesce(c.author_name, '') author, " +
+            "1 commits, 0 issues_opened, 0 issues_closed, 0 comments " +
+            "from commit c where c.project_id is not null%1$s%2$s " +
+            "union all select i.project_id, cast(i.created_at as date), coalesce(u.username, ''), 0, 1, 0, 0 " +
+            "from issue i left join gmuser u on u.id = i.author_id " +
+            "where i.project_id is not null and i.created_at is not null%1$s%3$s " +
+            "union all select i.project_id, cast(i.closed_at as date), coalesce(u.username, ''), 0, 0, 1, 0 " +
+            "from issue i left join gmuser u on u.id = i.author_id " +
+            "where i.project_id is not null and i.closed_at is not null%1$s%4$s " +
+            "union all select i.project_id, cast(m.created_at as date), coalesce(u.username, ''), 0, 0, 0, 1 " +
+            "from comment m join issue i on i.id = m.issue_id left join gmuser u on u.id = m.author_id " +
+            "where i.project_id is not null%1$s%5$s" +
+            ") a group by project_id, activity_day, author";
+
+    /**
+     * Rows about to be written: whole projects, and commits, issues (with their comments) and
+     * comments by id. Ids of rows that do not exist yet are fine.
+     */
+    public static class Change {
+        private final Set<String> projects = new HashSet<>();
+        private final Set<String> commits = new HashSet<>();
+        private final Set<String> issues = new HashSet<>();
+        private final Set<String> comments = new HashSet<>();
+        private final Map<String, LocalDate[]> days = new HashMap<>();
+
+        // A project whose children are replaced or deleted, recounted as a whole
+        public Change project(String projectId) {
+            projects.add(projectId);
+            return this;
+        }
+
+        // The children of a project payload, which may have belonged to other projects so far
+        public Change children(Project project) {
+            commits(orEmpty(project.getCommits()).stream().map(Commit::getId).toList());
+            return issues(orEmpty(project.getIssues()));
+        }
+
+        public Change commits(Collection<String> ids) {
+            ids.stream().filter(Objects::nonNull).forEach(commits::add);
+            return this;
+        }
+
+        public Change issues(List<Issue> issues) {
+            for (Issue issue : issues) {
+                if (issue.getId() != null) {
+                    this.issues.add(issue.getId());
+                }
+                comments(orEmpty(issue.getComments()).stream().map(Comment::getId).toList());
+            }
+            return this;
+        }
+
+        public Change issueIds(Collection<String> ids) {
+            ids.stream().filter(Objects::nonNull).forEach(issues::add);
+            return this;
+        }
+
+        public Change comments(Collection<String> ids) {
+            ids.stream().filter(Objects::nonNull).forEach(comments::add);
+            return this;
+        }
+
+        private static <T> List<T> orEmpty(List<T> list) {
+            return list == null ? Collections.emptyList() : list;
+        }
+    }
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    ActivityRollupRepository activityRollupRepository;
+
+    @Autowired
+    ProjectRepository projectRepository;
+
+    @Autowired
+    CacheManager hibernateCacheManager;
+
+    @Transactional(readOnly = true)
+    public Change before(Change change) {
+        readDays(change);
+        return change;
+    }
+
+    @Transactional
+    public void after(Change change) {
+        entityManager.flush();
+        readDays(change);
+        for (String projectId : change.projects) {
+            recount(projectId, null, null);
+        }
+        change.days.forEach((projectId, days) -> {
+            if (!change.projects.contains(projectId)) {
+                recount(projectId, days[0], days[1]);
+            }
+        });
+
+        Set<String> projects = new HashSet<>(change.projects);
+        projects.addAll(change.days.keySet());
+        if (!projects.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    projects.forEach(hibernateCacheManager.getCache(ProjectStatistics.CACHE)::remove);
+                }
+            });
+        }
+    }
+
+    /**
+     * Recounts every row of a project, or of all of them when projectId is null, and returns the
+     * number of rows stored.
+     */
+    @Transactional
+    public int rebuild(String projectId) throws ProjectNotFoundException {
+        if (projectId != null) {
+            if (!projectRepository.existsById(projectId)) {
+                throw new ProjectNotFoundException();
+            }
+            return recount(projectId, null, null);
+        }
+        rollupUpdate("delete from activity_rollup").executeUpdate();
+        int rows = rollupUpdate("insert into activity_rollup (" + COLUMNS + ") " + counts(false, false)).executeUpdate();
+        hibernateCacheManager.getCache(ProjectStatistics.CACHE).clear();
+        return rows;
+    }
+
+    @Transactional(readOnly = true)
+    public RollupCheckDto check(String projectId) throws ProjectNotFoundException {
+        if (projectId != null && !projectRepository.existsById(projectId)) {
+            throw new ProjectNotFoundException();
+        }
+        Query query = entityManager.createNativeQuery(counts(projectId != null, false));
+        if (projectId != null) {
+            query.setParameter("projectId", projectId);
+        }
+        Map<ActivityRollup.Key, RollupCheckDto.Counts> expected = new HashMap<>();
+        for (Object row : query.getResultList()) {
+            Object[] values = (Object[]) row;
+            expected.put(new ActivityRollup.Key((String) values[0], ((Date) values[1]).toLocalDate(), (String) values[2]),
+                    new RollupCheckDto.Counts(((Number) values[3]).longValue(), ((Number) values[4]).longValue(),
+                            ((Number) values[5]).longValue(), ((Number) values[6]).longValue()));
+        }
+
+        List<ActivityRollup> stored = projectId == null
+                ? activityRollupRepository.findAll()
+                : activityRollupRepository.findByProjectId(projectId);
+        List<RollupCheckDto.Mismatch> mismatches = new ArrayList<>();
+        long mismatched = 0;
+        for (ActivityRollup rollup : stored) {
+            ActivityRollup.Key key = new ActivityRollup.Key(rollup.getProjectId(), rollup.getDay(), rollup.getAuthor());
+            RollupCheckDto.Counts counts = new RollupCheckDto.Counts(rollup.getCommits(), rollup.getIssuesOpened(),
+                    rollup.getIssuesClosed(), rollup.getComments());
+            RollupCheckDto.Counts counted = expected.remove(key);
+            if (!counts.equals(counted)) {
+                mismatched++;
+                if (mismatches.size() < MISMATCHES_LISTED) {
+                    mismatches.add(new RollupCheckDto.Mismatch(rollup.getProjectId(), rollup.getDay(),
+                            rollup.getAuthor(), counted, counts));
+                }
+            }
+        }
+        // Left over: counted in the raw tables but never stored
+        for (Map.Entry<ActivityRollup.Key, RollupCheckDto.Counts> missing : expected.entrySet()) {
+            mismatched++;
+            if (mismatches.size() < MISMATCHES_LISTED) {
+                ActivityRollup.Key key = missing.getKey();
+                mismatches.add(new RollupCheckDto.Mismatch(key.getProjectId(), key.getDay(), key.getAuthor(),
+                        missing.getValue(), null));
+            }
+        }
+        return new RollupCheckDto(projectId, stored.size(), mismatched, mismatches);
+    }
+
+    /**
+     * Activity of a project per day, or per week when weekly, optionally of a single author.
+     * Only days or weeks with some activity are listed.
+     */
+    @Transactional(readOnly = true)
+    public List<ActivityDto> activity(String projectId, LocalDate since, LocalDate until, String author,
+                                      boolean weekly) throws ProjectNotFoundException {
+        if (!projectRepository.existsById(projectId)) {
+            throw new ProjectNotFoundException();
+        }
+        LocalDate first = since == null ? FIRST_DAY : since;
+        LocalDate last = until == null ? LAST_DAY : until;
+        List<Object[]> rows = author == null
+                ? activityRollupRepository.sumPerDay(projectId, first, last)
+                : activityRollupRepository.sumPerDayByAuthor(projectId, author, first, last);
+
+        SortedMap<LocalDate, long[]> periods = new TreeMap<>();
+        for (Object[] row : rows) {
+            LocalDate day = (LocalDate) row[0];
+            if (weekly) {
+                day = day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            }
+            long[] counts = periods.computeIfAbsent(day, k -> new long[4]);
+            for (int i = 0; i < 4; i++) {
+                counts[i] += ((Number) row[i + 1]).longValue();
+            }
+        }
+        List<ActivityDto> activity = new ArrayList<>();
+        periods.forEach((day, counts) -> activity.add(new ActivityDto(day, counts[0], counts[1], counts[2], counts[3])));
+        return activity;
+    }
+
+    // Replaces the rows of a project between two days included, or all of them without days
+    private int recount(String projectId, LocalDate first, LocalDate last) {
+        boolean days = first != null;
+        Query delete = rollupUpdate("delete from activity_rollup where project_id = :projectId"
+                + (days ? " and activity_day between :first and :last" : ""))
+                .setParameter("projectId", projectId);
+        // Concurrent recounts of the same days overwrite each other's rows instead of colliding. MERGE ... KEY
+        // is H2 syntax; another store would need its own upsert here
+        Query insert = rollupUpdate("merge into activity_rollup (" + COLUMNS + ") "
+                        + "key (project_id, activity_day, author) " + counts(true, days))
+                .setParameter("projectId", projectId);
+        if (days) {
+            delete.setParameter("first", first).setParameter("last", last);
+            insert.setParameter("from", first.atStartOfDay(ZoneOffset.UTC).toInstant())
+                    .setParameter("to", last.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+        }
+        delete.executeUpdate();
+        return insert.executeUpdate();
+    }
+
+    // Without the table it writes to, a native update would make Hibernate drop every cached entity
+    private Query rollupUpdate(String sql) {
+        return entityManager.createNativeQuery(sql).unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(ActivityRollup.class);
+    }
+
+    private static String counts(boolean project, boolean days) {
+        String range = days ? " and %s >= :from and %s < :to" : "";
+        // Only commit and issue have a project_id column, so it needs no alias
+        return String.format(COUNTS, project ? " and project_id = :projectId" : "",
+                String.format(range, "c.authored_date", "c.authored_date"),
+                String.format(range, "i.created_at", "i.created_at"),
+                String.format(range, "i.closed_at", "i.closed_at"),
+                String.format(range, "m.created_at", "m.created_at"));
+    }
+
+    // Widens the range of days of each project with those the rows of the change count in now
+    private void readDays(Change change) {
+        for (List<String> ids : chunks(change.commits)) {
+            addDays(change, entityManager.createQuery("select c.projectId, min(c.authoredDate), max(c.authoredDate) " +
+                    "from Commit c where c.id in :ids and c.projectId is not null group by c.projectId")
+                    .setParameter("ids", ids).getResultList());
+        }
+        for (List<String> ids : chunks(change.issues)) {
+            addDays(change, entityManager.createQuery("select i.projectId, min(i.createdAt), max(i.createdAt), " +
+                    "min(i.closedAt), max(i.closedAt) from Issue i where i.id in :ids and i.projectId is not null " +
+                    "group by i.projectId").setParameter("ids", ids).getResultList());
+            addDays(change, entityManager.createQuery("select i.projectId, min(c.createdAt), max(c.createdAt) " +
+                    "from Comment c, Issue i where c.issueId = i.id and i.id in :ids and i.projectId is not null " +
+                    "group by i.projectId").setParameter("ids", ids).getResultList());
+        }
+        for (List<String> ids : chunks(change.comments)) {
+            addDays(change, entityManager.createQuery("select i.projectId, min(c.createdAt), max(c.createdAt) " +
+                    "from Comment c, Issue i where c.issueId = i.id and c.id in :ids and i.projectId is not null " +
+                    "group by i.projectId").setParameter("ids", ids).getResultList());
+        }
+    }
+
+    private static void addDays(Change change, List<?> rows) {
+        for (Object row : rows) {
+            Object[] values = (Object[]) row;
+            for (int i = 1; i < values.length; i++) {
+                if (values[i] == null) {
+                    continue;
+                }
+                LocalDate day = LocalDate.ofInstant((Instant) values[i], ZoneOffset.UTC);
+                LocalDate[] days = change.days.computeIfAbsent((String) values[0], k -> new LocalDate[]{day, day});
+                if (day.isBefore(days[0])) {
+                    days[0] = day;
+                }
+                if (day.isAfter(days[1])) {
+                    days[1] = day;
+                }
+            }
+        }
+    }
+
+    private static List<List<String>> chunks(Set<String> ids) {
+        List<String> all = new ArrayList<>(ids);
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += IDS_PER_QUERY) {
+            chunks.add(all.subList(i, Math.min(all.size(), i + IDS_PER_QUERY)));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,93 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.repository.CommentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter over the fingerprints of every stored comment.
+ *
+ * A negative answer means the comment is certainly new, so ingestion can skip the database
+ * lookup; a positive answer still has to be confirmed with CommentRepository.findFirstByFingerprint.
+ * The filter is filled from the database on first use and then kept up to date by
+ * CommentFingerprintListener. Deleted comments are never removed, they only cost a lookup.
+ */
+@Service
+public class CommentFingerprintIndex {
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final int hashes;
+    private final long bits;
+    private final AtomicLongArray words;
+    private volatile boolean loaded;
+
+    public CommentFingerprintIndex(@Value("${gitminer.comments.bloom.expected-insertions:1000000}") long expectedInsertions,
+                                   @Value("${gitminer.comments.bloom.false-positive-rate:0.01}") double falsePositiveRate) {
+        long size = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.words = new AtomicLongArray((int) Math.max(1, (size + 63) / 64));
+        this.bits = words.length() * 64L;
+        this.hashes = (int) Math.max(1, Math.round((double) bits / expectedInsertions * Math.log(2)));
+    }
+
+    public boolean mightContain(String fingerprint) {
+        if (!loaded) {
+            load();
+        }
+        long h1 = hash(fingerprint, 0);
+        long h2 = hash(fingerprint, 16);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(String fingerprint) {
+        if (fingerprint == null) {
+            return;
+        }
+        long h1 = hash(fingerprint, 0);
+        long h2 = hash(fingerprint, 16);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = words.get(word)) & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                // retry until the bit is set
+            }
+        }
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.executeWithoutResult(status -> {
+            try (Stream<String> fingerprints = commentRepository.streamAllFingerprints()) {
+                fingerprints.forEach(this::add);
+            }
+        });
+        loaded = true;
+    }
+
+    // Fingerprints are already uniformly distributed hex digests, so their halves serve as hashes
+    private static long hash(String fingerprint, int offset) {
+        return Long.parseUnsignedLong(fingerprint.substring(offset, offset + 16), 16);
+    }
+}
@@ -0,0 +1,68 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.dto.JobDto;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A payload accepted by IngestionQueue, updated by the worker that writes it and read by
+ * GET /gitminer/jobs/{id} from any request thread.
+ */
+public class IngestionJob {
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String type;
+    private final Instant submittedAt = Instant.now();
+    private final Map<String, Integer> received;
+    private final Map<String, Integer> stored = new ConcurrentHashMap<>();
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String resource;
+    private volatile String error;
+
+    IngestionJob(String type, Map<String, Integer> received) {
+        this.type = type;
+        this.received = Map.copyOf(received);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void stored(String entity, int count) {
+        stored.merge(entity, count, Integer::sum);
+    }
+
+    void started() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void succeeded(String resource) {
+        this.resource = resource;
+        finishedAt = Instant.now();
+        status = Status.SUCCEEDED;
+    }
+
+    void failed(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    public JobDto toDto() {
+        return new JobDto(id, type, status.name().toLowerCase(), submittedAt, startedAt, finishedAt,
+                new TreeMap<>(received), new TreeMap<>(stored), resource, error);
+    }
+}
@@ -0,0 +1,99 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.exception.IngestionQueueFullException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+/**
+ * Writes accepted payloads on a fixed pool of workers, off the request threads.
+ *
+ * The queue in front of the workers is bounded: once it is full new jobs are rejected instead
+ * of piling up in memory, and the client is expected to retry later. Since every worker holds a
+ * database connection while it writes, keeping the pool smaller than the connection pool leaves
+ * connections for the readers. Jobs only live in memory, the most recent finished ones are kept
+ * for GET /gitminer/jobs/{id}.
+ */
+@Service
+public class IngestionQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionQueue.class);
+
+    @FunctionalInterface
+    public interface Work {
+        /**
+         * Writes the payload, reporting what was stored on the job, and returns the path of the
+         * created resource.
+         */
+        String run(IngestionJob job) throws Exception;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final int history;
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final Queue<IngestionJob> finished = new ConcurrentLinkedQueue<>();
+
+    public IngestionQueue(@Value("${gitminer.ingest.workers:2}") int workers,
+                          @Value("${gitminer.ingest.queue-capacity:100}") int capacity,
+                          @Value("${gitminer.ingest.job-history:1000}") int history) {
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), new CustomizableThreadFactory("ingest-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.history = history;
+    }
+
+    /**
+     * @param received number of entities of each type in the payload
+     */
+    public IngestionJob submit(String type, Map<String, Integer> received, Work work)
+            throws IngestionQueueFullException {
+        IngestionJob job = new IngestionJob(type, received);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, work));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new IngestionQueueFullException();
+        }
+        return job;
+    }
+
+    public Optional<IngestionJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    private void run(IngestionJob job, Work work) {
+        job.started();
+        try {
+            job.succeeded(work.run(job));
+        } catch (Exception e) {
+            log.warn("Ingestion job {} failed", job.getId(), e);
+            job.failed(NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+        finished.add(job);
+        while (finished.size() > history) {
+            IngestionJob oldest = finished.poll();
+            if (oldest != null) {
+                jobs.remove(oldest.getId());
+            }
+        }
+    }
+
+    // Lets the jobs already accepted finish, new ones are rejected from now on
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("{} ingestion jobs were still pending at shutdown", executor.shutdownNow().size());
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.exception.InvalidCursorException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.*;
+import javax.persistence.metamodel.Attribute;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Cursor based paging for the list endpoints.
+ *
+ * Instead of skipping OFFSET rows, every page continues right after the (sort key, id) pair of
+ * the last row of the previous page, so deep pages cost the same as the first one. The cursor
+ * handed to clients is that pair encoded as base64 JSON, together with the order it belongs to.
+ * Rows with a null sort key are ordered as the smallest values, like H2 does.
+ *
+ * Only first pages go to the query cache: they are the ones read over and over, while each cursor
+ * or offset further on would take an entry of its own that is seldom read again.
+ */
+@Component
+public class KeysetPager {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String ID = "id";
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    /**
+     * @param filter optional restriction, may be null
+     * @param order  attribute to sort by, prefixed with "-" for descending order; null sorts by id
+     * @param after  cursor returned by a previous call, null or empty for the first page
+     */
+    public <T> Slice<T> findAll(Class<T> type, Specification<T> filter, String order, String after, int size)
+            throws InvalidCursorException {
+        return findAll(type, null, null, filter, order, after, size);
+    }
+
+    /**
+     * Same as {@link #findAll(Class, Specification, String, String, int)} within the rows whose
+     * scope attribute equals value, such as the commits of a project. The scope leads the ORDER BY,
+     * which does not change the order but lets an index on (scope, sort key) return the rows
+     * already sorted instead of sorting every row of the scope for each page.
+     */
+    public <T> Slice<T> findAllWithin(Class<T> type, String scope, Object value, Specification<T> filter,
+                                      String order, String after, int size) throws InvalidCursorException {
+        return findAll(type, scope, value, filter, order, after, size);
+    }
+
+    private <T> Slice<T> findAll(Class<T> type, String scope, Object scopeValue, Specification<T> filter, String order,
+                                 String after, int size) throws InvalidCursorException {
+        boolean descending = order != null && order.startsWith("-");
+        String field = descending ? order.substring(1) : order;
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(type);
+        Root<T> root = query.from(type);
+        // To-one associations come with the page instead of one select per referenced row
+        root.getModel().getSingularAttributes().stream()
+                .filter(Attribute::isAssociation)
+                .forEach(attribute -> root.fetch(attribute.getName(), JoinType.LEFT));
+        Path<String> id = root.get(ID);
+        Path<Comparable<Object>> key = field == null ? null : path(root, field);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (scope != null) {
+            predicates.add(cb.equal(root.get(scope), scopeValue));
+        }
+        if (filter != null) {
+            Predicate predicate = filter.toPredicate(root, query, cb);
+            if (predicate != null) {
+                predicates.add(predicate);
+            }
+        }
+        if (after != null && !after.isEmpty()) {
+            JsonNode cursor = decode(after, order);
+            String lastId = cursor.get(ID).asText();
+            if (key == null) {
+                predicates.add(after(cb, id, lastId, descending));
+            } else {
+                JsonNode lastKey = cursor.get("key");
+                if (lastKey == null || lastKey.isNull()) {
+                    Predicate sameKey = cb.and(cb.isNull(key), after(cb, id, lastId, descending));
+                    predicates.add(descending ? sameKey : cb.or(sameKey, cb.isNotNull(key)));
+                } else {
+                    Comparable<Object> value = objectMapper.convertValue(lastKey, key.getJavaType());
+                    Predicate sameKey = cb.and(cb.equal(key, value), after(cb, id, lastId, descending));
+                    Predicate nextKey = descending ? cb.lessThan(key, value) : cb.greaterThan(key, value);
+                    predicates.add(descending ? cb.or(nextKey, sameKey, cb.isNull(key)) : cb.or(nextKey, sameKey));
+                }
+            }
+        }
+
+        List<Order> orders = new ArrayList<>();
+        if (scope != null) {
+            orders.add(descending ? cb.desc(root.get(scope)) : cb.asc(root.get(scope)));
+        }
+        if (key != null) {
+            orders.add(descending ? cb.desc(key) : cb.asc(key));
+        }
+        orders.add(descending ? cb.desc(id) : cb.asc(id));
+
+        query.select(root).where(predicates.toArray(new Predicate[0])).orderBy(orders);
+        List<T> content = entityManager.createQuery(query)
+                .setHint(QueryHints.HINT_CACHEABLE, after == null || after.isEmpty())
+                .setMaxResults(size + 1)
+                .getResultList();
+
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content = new ArrayList<>(content.subList(0, size));
+        }
+        return new SliceImpl<>(content, PageRequest.ofSize(Math.max(size, 1)), hasNext);
+    }
+
+    /**
+     * Offset paging for filters the derived queries cannot express. Like those, it reads one row
+     * more than asked to know whether there is a next slice instead of counting the matches.
+     * Rows are also ordered by id, so that rows with the same sort key keep their place from one
+     * page to the next.
+     */
+    public <T> Slice<T> findAll(Class<T> type, Specification<T> filter, Pageable paging) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(type);
+        Root<T> root = query.from(type);
+        root.getModel().getSingularAttributes().stream()
+                .filter(Attribute::isAssociation)
+                .forEach(attribute -> root.fetch(attribute.getName(), JoinType.LEFT));
+
+        Sort sort = paging.getSort().getOrderFor(ID) == null ? paging.getSort().and(Sort.by(ID)) : paging.getSort();
+        query.select(root).orderBy(QueryUtils.toOrders(sort, root, cb));
+        if (filter != null) {
+            Predicate predicate = filter.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        List<T> content = entityManager.createQuery(query)
+                .setHint(QueryHints.HINT_CACHEABLE, paging.getOffset() == 0)
+                .setFirstResult((int) paging.getOffset())
+                .setMaxResults(paging.getPageSize() + 1)
+                .getResultList();
+
+        boolean hasNext = content.size() > paging.getPageSize();
+        if (hasNext) {
+            content = new ArrayList<>(content.subList(0, paging.getPageSize()));
+        }
+        return new SliceImpl<>(content, paging, hasNext);
+    }
+
+    /**
+     * Cursor pointing right after the last element of the slice, or null if it is the last one.
+     */
+    public String nextCursor(Slice<?> slice, String order) {
+        if (!slice.hasNext() || slice.getContent().isEmpty()) {
+            return null;
+        }
+        BeanWrapperImpl last = new BeanWrapperImpl(slice.getContent().get(slice.getContent().size() - 1));
+        last.setAutoGrowNestedPaths(true);
+
+        ObjectNode cursor = objectMapper.createObjectNode();
+        cursor.put("order", order);
+        if (order != null) {
+            String field = order.startsWith("-") ? order.substring(1) : order;
+            cursor.putPOJO("key", last.getPropertyValue(field));
+        }
+        cursor.put(ID, String.valueOf(last.getPropertyValue(ID)));
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(cursor));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private JsonNode decode(String after, String order) throws InvalidCursorException {
+        JsonNode cursor;
+        try {
+            cursor = objectMapper.readTree(Base64.getUrlDecoder().decode(after));
+        } catch (IllegalArgumentException | IOException e) {
+            throw new InvalidCursorException();
+        }
+        if (cursor == null || !cursor.hasNonNull(ID) || !Objects.equals(order, cursor.path("order").textValue())) {
+            throw new InvalidCursorException();
+        }
+        return cursor;
+    }
+
+    private static Predicate after(CriteriaBuilder cb, Path<String> id, String lastId, boolean descending) {
+        return descending ? cb.lessThan(id, lastId) : cb.greaterThan(id, lastId);
+    }
+
+    // Nested attributes such as "author.name" are reached through left joins, as Spring Data does for sorting
+    private static <T> Path<Comparable<Object>> path(Root<T> root, String field) {
+        String[] parts = field.split("\\.");
+        From<?, ?> from = root;
+        for (int i = 0; i < parts.length - 1; i++) {
+            from = from.join(parts[i], JoinType.LEFT);
+        }
+        return from.get(parts[parts.length - 1]);
+    }
+}
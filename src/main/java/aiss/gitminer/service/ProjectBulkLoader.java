@@ -0,0 +1,267 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.exception.InvalidBulkPayloadException;
+import aiss.gitminer.exception.UserConflictException;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.model.User;
+import aiss.gitminer.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityExistsException;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Loads a whole project from an NDJSON stream without building the object graph in memory.
+ *
+ * Every line is a JSON object with a "type" field: the first one must be the "project" header,
+ * followed by any number of "user", "commit", "issue" and "comment" lines. Comment lines carry
+ * the "issue_id" they belong to, which must be loaded by an earlier line, and users are matched
+ * by username. Entities are persisted in batches and the persistence context is flushed and
+ * cleared after each batch, so heap usage does not grow with the project size, apart from the
+ * ids of the issues loaded so far.
+ *
+ * Ids already stored, or repeated in the stream, fail the whole load with a 400.
+ */
+@Service
+public class ProjectBulkLoader {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    Validator validator;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ActivityRollups activityRollups;
+
+    @Value("${gitminer.bulk.batch-size:500}")
+    int batchSize;
+
+    @Transactional(rollbackFor = InvalidBulkPayloadException.class)
+    public Map<String, Integer> load(InputStream in) throws InvalidBulkPayloadException {
+        Batch batch = new Batch();
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new InvalidBulkPayloadException("Every line must be a JSON object");
+                }
+                ObjectNode line = parser.readValueAsTree();
+                JsonNode type = line.remove("type");
+
+                if (type == null) {
+                    throw new InvalidBulkPayloadException("Missing \"type\" field");
+                }
+                if (batch.projectId == null && !type.asText().equals("project")) {
+                    throw new InvalidBulkPayloadException("The first line must be the project header");
+                }
+                switch (type.asText()) {
+                    case "project":
+                        loadProject(batch, line);
+                        break;
+                    case "user":
+                        loadUser(batch, line);
+                        break;
+                    case "commit":
+                        loadCommit(batch, line);
+                        break;
+                    case "issue":
+                        loadIssue(batch, line);
+                        break;
+                    case "comment":
+                        loadComment(batch, line);
+                        break;
+                    default:
+                        throw new InvalidBulkPayloadException("Unknown type \"" + type.asText() + "\"");
+                }
+                if (batch.pending >= batchSize) {
+                    flush(batch);
+                }
+            }
+            if (batch.projectId == null) {
+                throw new InvalidBulkPayloadException("Empty payload");
+            }
+            flush(batch);
+        } catch (JsonProcessingException e) {
+            throw new InvalidBulkPayloadException(e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new InvalidBulkPayloadException(e.getMessage());
+        } catch (PersistenceException e) {
+            if (e instanceof EntityExistsException || e.getCause() instanceof ConstraintViolationException) {
+                throw new InvalidBulkPayloadException("An id of the payload is repeated or already stored");
+            }
+            throw e;
+        }
+        activityRollups.after(new ActivityRollups.Change().project(batch.projectId));
+        return batch.counts;
+    }
+
+    private void loadProject(Batch batch, ObjectNode line) throws IOException, InvalidBulkPayloadException {
+        if (batch.projectId != null) {
+            throw new InvalidBulkPayloadException("Only one project header is allowed");
+        }
+        Project project = read(line, Project.class);
+        if (project.getId() == null) {
+            throw new InvalidBulkPayloadException("The project id cannot be empty");
+        }
+        project.setCommits(new ArrayList<>());
+        project.setIssues(new ArrayList<>());
+        entityManager.persist(project);
+        batch.projectId = project.getId();
+        batch.count("project");
+    }
+
+    private void loadUser(Batch batch, ObjectNode line) throws IOException, InvalidBulkPayloadException {
+        resolveUser(batch, read(line, User.class));
+    }
+
+    private void loadCommit(Batch batch, ObjectNode line) throws IOException, InvalidBulkPayloadException {
+        Commit commit = read(line, Commit.class);
+        requireId(commit.getId());
+        entityManager.persist(commit);
+        batch.commitIds.add(commit.getId());
+        batch.count("commits");
+    }
+
+    private void loadIssue(Batch batch, ObjectNode line) throws IOException, InvalidBulkPayloadException {
+        Issue issue = read(line, Issue.class);
+        requireId(issue.getId());
+        issue.setAuthor(resolveUser(batch, issue.getAuthor()));
+        issue.setAssignee(resolveUser(batch, issue.getAssignee()));
+        if (issue.getComments() != null) {
+            for (Comment comment : issue.getComments()) {
+                comment.setAuthor(resolveUser(batch, comment.getAuthor()));
+                batch.count("comments");
+            }
+        }
+        entityManager.persist(issue);
+        batch.issueIds.add(issue.getId());
+        batch.loadedIssueIds.add(issue.getId());
+        batch.count("issues");
+    }
+
+    private void loadComment(Batch batch, ObjectNode line) throws IOException, InvalidBulkPayloadException {
+        JsonNode issueId = line.remove("issue_id");
+        if (issueId == null) {
+            throw new InvalidBulkPayloadException("Comment lines must include \"issue_id\"");
+        }
+        if (!batch.loadedIssueIds.contains(issueId.asText())) {
+            throw new InvalidBulkPayloadException("Unknown issue \"" + issueId.asText() + "\", comments must follow their issue");
+        }
+        Comment comment = read(line, Comment.class);
+        requireId(comment.getId());
+        comment.setAuthor(resolveUser(batch, comment.getAuthor()));
+        entityManager.persist(comment);
+        batch.commentIds.computeIfAbsent(issueId.asText(), k -> new ArrayList<>()).add(comment.getId());
+        batch.count("comments");
+    }
+
+    // Users are shared between issues and comments, so each username is only upserted once per load
+    private User resolveUser(Batch batch, User user) throws InvalidBulkPayloadException {
+        if (user == null) {
+            return null;
+        }
+        if (user.getUsername() == null) {
+            throw new InvalidBulkPayloadException("The username cannot be empty");
+        }
+        String id = batch.userIds.get(user.getUsername());
+        if (id == null) {
+            try {
+                id = userRepository.upsertAll(List.of(user)).get(user.getUsername()).getId();
+            } catch (UserConflictException e) {
+                throw new InvalidBulkPayloadException(e.getMessage());
+            }
+            batch.userIds.put(user.getUsername(), id);
+            batch.count("users");
+        }
+        // A reference keeps working after the persistence context is cleared
+        return entityManager.getReference(User.class, id);
+    }
+
+    private static void requireId(String id) throws InvalidBulkPayloadException {
+        if (id == null) {
+            throw new InvalidBulkPayloadException("Every commit, issue and comment needs an id");
+        }
+    }
+
+    private <T> T read(ObjectNode line, Class<T> type) throws IOException, InvalidBulkPayloadException {
+        T entity = objectMapper.treeToValue(line, type);
+        Set<ConstraintViolation<T>> violations = validator.validate(entity);
+        if (!violations.isEmpty()) {
+            throw new InvalidBulkPayloadException(violations.iterator().next().getMessage());
+        }
+        return entity;
+    }
+
+    // The children do not own their join columns, so these are set with one update per batch
+    private void flush(Batch batch) {
+        entityManager.flush();
+        if (!batch.commitIds.isEmpty()) {
+            entityManager.createQuery("update Commit c set c.projectId = :projectId where c.id in :ids")
+                    .setParameter("projectId", batch.projectId)
+                    .setParameter("ids", batch.commitIds)
+                    .executeUpdate();
+        }
+        if (!batch.issueIds.isEmpty()) {
+            entityManager.createQuery("update Issue i set i.projectId = :projectId where i.id in :ids")
+                    .setParameter("projectId", batch.projectId)
+                    .setParameter("ids", batch.issueIds)
+                    .executeUpdate();
+        }
+        for (Map.Entry<String, List<String>> entry : batch.commentIds.entrySet()) {
+            entityManager.createQuery("update Comment c set c.issueId = :issueId where c.id in :ids")
+                    .setParameter("issueId", entry.getKey())
+                    .setParameter("ids", entry.getValue())
+                    .executeUpdate();
+        }
+        entityManager.clear();
+
+        batch.commitIds.clear();
+        batch.issueIds.clear();
+        batch.commentIds.clear();
+        batch.pending = 0;
+    }
+
+    private static class Batch {
+        String projectId;
+        int pending;
+        final List<String> commitIds = new ArrayList<>();
+        final List<String> issueIds = new ArrayList<>();
+        final Map<String, List<String>> commentIds = new HashMap<>();
+        final Set<String> loadedIssueIds = new HashSet<>();
+        final Map<String, String> userIds = new HashMap<>();
+        final Map<String, Integer> counts = new LinkedHashMap<>();
+
+        void count(String key) {
+            counts.merge(key, 1, Integer::sum);
+            pending++;
+        }
+    }
+}
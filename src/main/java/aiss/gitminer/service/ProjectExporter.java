@@ -0,0 +1,229 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.dto.IssueDto;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.repository.CommentRepository;
+import aiss.gitminer.repository.CommitRepository;
+import aiss.gitminer.repository.IssueRepository;
+import aiss.gitminer.repository.ProjectRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes a whole project while reading it, without ever holding its object graph.
+ *
+ * Commits, issues, labels and comments are read through streaming queries ordered by id, so the
+ * labels and comments of each issue are merged with it as the three result sets advance. Every
+ * entity is detached once written. The JSON format has the same shape as GET /projects/{id}; the
+ * NDJSON one has one typed object per line, the same format POST /projects/bulk reads.
+ */
+@Service
+public class ProjectExporter {
+
+    // Rows written between two flushes of the response
+    private static final int FLUSH_INTERVAL = 500;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ProjectRepository projectRepository;
+
+    @Autowired
+    CommitRepository commitRepository;
+
+    @Autowired
+    IssueRepository issueRepository;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Transactional(readOnly = true)
+    public void export(String projectId, OutputStream out, boolean ndjson) throws IOException {
+        Project project = projectRepository.findById(projectId).orElseThrow();
+
+        try (JsonGenerator gen = objectMapper.createGenerator(out)) {
+            gen.setRootValueSeparator(null);
+            Writer writer = ndjson ? new NdjsonWriter(gen) : new JsonWriter(gen);
+
+            writer.project(project);
+            gen.flush();
+
+            try (Stream<Commit> commits = commitRepository.streamByProjectIdOrderById(projectId)) {
+                for (Iterator<Commit> it = commits.iterator(); it.hasNext(); ) {
+                    Commit commit = it.next();
+                    writer.commit(commit);
+                    entityManager.detach(commit);
+                    writer.row();
+                }
+            }
+            writer.endCommits();
+
+            try (Stream<Issue> issues = issueRepository.streamByProjectIdOrderById(projectId);
+                 Stream<Object[]> labelRows = issueRepository.streamLabelsByProjectId(projectId);
+                 Stream<Comment> commentRows = commentRepository.streamByIssueProjectId(projectId)) {
+                Merge<Object[]> labels = new Merge<>(labelRows.iterator());
+                Merge<Comment> comments = new Merge<>(commentRows.iterator());
+
+                for (Iterator<Issue> it = issues.iterator(); it.hasNext(); ) {
+                    Issue issue = it.next();
+                    List<String> issueLabels = new ArrayList<>();
+                    while (labels.hasNext() && issue.getId().equals(labels.peek()[0])) {
+                        issueLabels.add((String) labels.next()[1]);
+                    }
+                    List<Comment> issueComments = new ArrayList<>();
+                    while (comments.hasNext() && issue.getId().equals(comments.peek().getIssueId())) {
+                        issueComments.add(comments.next());
+                    }
+                    writer.issue(issue, issueLabels, issueComments);
+                    entityManager.detach(issue);
+                    issueComments.forEach(entityManager::detach);
+                    writer.row();
+                }
+            }
+            writer.end();
+        }
+    }
+
+    private abstract static class Writer {
+        final JsonGenerator gen;
+        int rows;
+
+        Writer(JsonGenerator gen) {
+            this.gen = gen;
+        }
+
+        abstract void project(Project project) throws IOException;
+        abstract void commit(Commit commit) throws IOException;
+        abstract void endCommits() throws IOException;
+        abstract void issue(Issue issue, List<String> labels, List<Comment> comments) throws IOException;
+        abstract void end() throws IOException;
+
+        void row() throws IOException {
+            if (++rows % FLUSH_INTERVAL == 0) {
+                gen.flush();
+            }
+        }
+    }
+
+    // Same document as GET /projects/{id}
+    private static class JsonWriter extends Writer {
+
+        JsonWriter(JsonGenerator gen) {
+            super(gen);
+        }
+
+        void project(Project project) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("id", project.getId());
+            gen.writeStringField("name", project.getName());
+            gen.writeStringField("web_url", project.getWebUrl());
+            gen.writeArrayFieldStart("commits");
+        }
+
+        void commit(Commit commit) throws IOException {
+            gen.writeObject(commit);
+        }
+
+        void endCommits() throws IOException {
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("issues");
+        }
+
+        void issue(Issue issue, List<String> labels, List<Comment> comments) throws IOException {
+            gen.writeObject(IssueDto.of(issue, labels, comments));
+        }
+
+        void end() throws IOException {
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+    }
+
+    // One typed object per line, readable by ProjectBulkLoader
+    private class NdjsonWriter extends Writer {
+
+        NdjsonWriter(JsonGenerator gen) {
+            super(gen);
+        }
+
+        void project(Project project) throws IOException {
+            ObjectNode line = line("project");
+            line.put("id", project.getId());
+            line.put("name", project.getName());
+            line.put("web_url", project.getWebUrl());
+            write(line);
+        }
+
+        void commit(Commit commit) throws IOException {
+            write(line("commit").setAll((ObjectNode) objectMapper.valueToTree(commit)));
+        }
+
+        void endCommits() {
+        }
+
+        void issue(Issue issue, List<String> labels, List<Comment> comments) throws IOException {
+            write(line("issue").setAll((ObjectNode) objectMapper.valueToTree(IssueDto.of(issue, labels, null))));
+            for (Comment comment : comments) {
+                ObjectNode line = line("comment");
+                line.put("issue_id", issue.getId());
+                write(line.setAll((ObjectNode) objectMapper.valueToTree(comment)));
+            }
+        }
+
+        void end() {
+        }
+
+        private ObjectNode line(String type) {
+            return objectMapper.createObjectNode().put("type", type);
+        }
+
+        private void write(ObjectNode line) throws IOException {
+            gen.writeTree(line);
+            gen.writeRaw('\n');
+        }
+    }
+
+    private static class Merge<T> {
+        private final Iterator<T> iterator;
+        private T next;
+
+        Merge(Iterator<T> iterator) {
+            this.iterator = iterator;
+            this.next = iterator.hasNext() ? iterator.next() : null;
+        }
+
+        boolean hasNext() {
+            return next != null;
+        }
+
+        T peek() {
+            return next;
+        }
+
+        T next() {
+            T current = next;
+            next = iterator.hasNext() ? iterator.next() : null;
+            return current;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.dto.ActivityDto;
+import aiss.gitminer.dto.ProjectStatsDto;
+import aiss.gitminer.exception.ProjectNotFoundException;
+import aiss.gitminer.repository.CommentRepository;
+import aiss.gitminer.repository.CommitRepository;
+import aiss.gitminer.repository.IssueRepository;
+import aiss.gitminer.repository.ProjectRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Contributor and activity statistics of a project, computed by aggregate queries.
+ *
+ * Weekly activity is read from the activity rollups, so the rows read grow with the age of the
+ * project, not with its size. Results are kept in the project-stats cache until ReadCache evicts
+ * the project, which every write to it does.
+ *
+ * A write may commit and evict the project while its statistics are being computed from the rows
+ * before it. So a marker is put in the cache first, and the results only replace that marker: if
+ * the project was evicted in the meantime, the marker is gone and the results are not kept.
+ */
+@Service
+public class ProjectStatistics {
+
+    public static final String CACHE = "project-stats";
+
+    @Autowired
+    ProjectRepository projectRepository;
+
+    @Autowired
+    CommitRepository commitRepository;
+
+    @Autowired
+    IssueRepository issueRepository;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    ActivityRollups activityRollups;
+
+    @Autowired
+    CacheManager hibernateCacheManager;
+
+    @Transactional(readOnly = true)
+    public ProjectStatsDto project(String projectId) throws ProjectNotFoundException {
+        Cache<Object, Object> cache = hibernateCacheManager.getCache(CACHE);
+        Object cached = cache.get(projectId);
+        if (cached instanceof ProjectStatsDto stats) {
+            return stats;
+        }
+        if (!projectRepository.existsById(projectId)) {
+            throw new ProjectNotFoundException();
+        }
+        // The marker of another computation started since the last eviction is as good as ours
+        Object marker = cached;
+        if (marker == null) {
+            marker = UUID.randomUUID().toString();
+            cache.putIfAbsent(projectId, marker);
+        }
+
+        List<ProjectStatsDto.AuthorCount> commitsPerAuthor = authorCounts(commitRepository.countPerAuthor(projectId));
+        List<ProjectStatsDto.AuthorCount> commentsPerAuthor = authorCounts(commentRepository.countPerAuthor(projectId));
+        List<ProjectStatsDto.StateCount> issuesPerState = new ArrayList<>();
+        for (Object[] row : issueRepository.countPerState(projectId)) {
+            issuesPerState.add(new ProjectStatsDto.StateCount((String) row[0], ((Number) row[1]).longValue(),
+                    row[2] == null ? 0 : ((Number) row[2]).longValue(), (Double) row[3]));
+        }
+
+        List<ProjectStatsDto.WeekActivity> weeklyActivity = new ArrayList<>();
+        for (ActivityDto week : activityRollups.activity(projectId, null, null, null, true)) {
+            weeklyActivity.add(new ProjectStatsDto.WeekActivity(week.day(), week.commits(), week.issuesOpened(),
+                    week.issuesClosed(), week.comments()));
+        }
+
+        Double meanSeconds = issueRepository.findMeanSecondsToClose(projectId);
+        ProjectStatsDto stats = new ProjectStatsDto(projectId,
+                commitsPerAuthor.stream().mapToLong(ProjectStatsDto.AuthorCount::count).sum(),
+                issuesPerState.stream().mapToLong(ProjectStatsDto.StateCount::issues).sum(),
+                commentsPerAuthor.stream().mapToLong(ProjectStatsDto.AuthorCount::count).sum(),
+                meanSeconds == null ? null : meanSeconds / 3600,
+                commitsPerAuthor, commentsPerAuthor, issuesPerState, weeklyActivity);
+        cache.replace(projectId, marker, stats);
+        return stats;
+    }
+
+    private static List<ProjectStatsDto.AuthorCount> authorCounts(List<Object[]> rows) {
+        List<ProjectStatsDto.AuthorCount> counts = new ArrayList<>();
+        for (Object[] row : rows) {
+            counts.add(new ProjectStatsDto.AuthorCount((String) row[0], ((Number) row[1]).longValue()));
+        }
+        return counts;
+    }
+}
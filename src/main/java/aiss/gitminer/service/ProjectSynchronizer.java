@@ -0,0 +1,414 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.dto.ProjectDelta;
+import aiss.gitminer.dto.ProjectSyncDto;
+import aiss.gitminer.exception.InvalidSyncDeltaException;
+import aiss.gitminer.exception.ProjectNotFoundException;
+import aiss.gitminer.exception.UserConflictException;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.model.User;
+import aiss.gitminer.repository.CommentRepository;
+import aiss.gitminer.repository.CommitRepository;
+import aiss.gitminer.repository.IssueRepository;
+import aiss.gitminer.repository.ProjectRepository;
+import aiss.gitminer.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Applies a delta to a stored project, writing only the rows that changed.
+ *
+ * Only the children named in the delta are read, all at once by id, and the project collections
+ * are never loaded. Issues and comments whose updated_at is not later than the stored one are left
+ * alone, as are commits, which have no updated_at, and children sent without one when none of
+ * their fields changed. As in the bulk loader, the join columns of new children are set with one
+ * update per parent. Those updates do not go through the issues, so the versions of the issues
+ * whose comments were added, removed, moved or changed are forced up afterwards.
+ *
+ * Children stored without a project, such as those posted on their own, are attached to the
+ * project, and comments named under another issue are moved to it; both count as updates. Children
+ * of another project are rejected, as a delta only writes to its own project. Children are told
+ * apart by id alone: a comment under a new id is added even when its content is already stored.
+ */
+@Service
+public class ProjectSynchronizer {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    Validator validator;
+
+    @Autowired
+    ProjectRepository projectRepository;
+
+    @Autowired
+    CommitRepository commitRepository;
+
+    @Autowired
+    IssueRepository issueRepository;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    SearchIndex searchIndex;
+
+    @Autowired
+    ActivityRollups activityRollups;
+
+    @Autowired
+    ResourceVersions resourceVersions;
+
+    @Transactional(rollbackFor = {ProjectNotFoundException.class, InvalidSyncDeltaException.class,
+            UserConflictException.class})
+    public ProjectSyncDto sync(String projectId, ProjectDelta delta)
+            throws ProjectNotFoundException, InvalidSyncDeltaException, UserConflictException {
+        Project project = projectRepository.findById(projectId).orElseThrow(ProjectNotFoundException::new);
+        List<Commit> commits = orEmpty(delta.commits());
+        List<Issue> issues = orEmpty(delta.issues());
+
+        // Comments are merged on their own, so new issues are persisted without them
+        List<Comment> comments = new ArrayList<>();
+        Map<String, String> commentIssues = new HashMap<>();
+        for (Issue issue : issues) {
+            for (Comment comment : orEmpty(issue.getComments())) {
+                comments.add(comment);
+                commentIssues.put(comment.getId(), issue.getId());
+            }
+        }
+        validate(commits, Commit::getId);
+        validate(issues, Issue::getId);
+        validate(comments, Comment::getId);
+        new UserIdentityMap(userRepository).resolveIssues(issues);
+        ActivityRollups.Change change = activityRollups.before(new ActivityRollups.Change()
+                .commits(ids(commits, Commit::getId)).commits(orEmpty(delta.removedCommits()))
+                .issues(issues).issueIds(orEmpty(delta.removedIssues()))
+                .comments(orEmpty(delta.removedComments())));
+
+        Counter commitCounts = new Counter();
+        Counter issueCounts = new Counter();
+        Counter commentCounts = new Counter();
+        Set<String> touchedIssues = new HashSet<>();
+
+        removeComments(projectId, orEmpty(delta.removedComments()), commentCounts, touchedIssues);
+        removeIssues(projectId, orEmpty(delta.removedIssues()), issueCounts);
+        removeCommits(projectId, orEmpty(delta.removedCommits()), commitCounts);
+
+        mergeCommits(projectId, commits, commitCounts);
+        mergeIssues(projectId, issues, issueCounts);
+        mergeComments(projectId, comments, commentIssues, commentCounts, touchedIssues);
+
+        touchedIssues.removeAll(orEmpty(delta.removedIssues()));
+        resourceVersions.touchIssues(touchedIssues);
+        if (commitCounts.changed() || issueCounts.changed() || commentCounts.changed()) {
+            entityManager.lock(project, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        }
+        activityRollups.after(change);
+
+        Instant watermark = Stream.of(commitRepository.findLatestTimestamp(projectId),
+                        issueRepository.findLatestTimestamp(projectId),
+                        commentRepository.findLatestTimestamp(projectId))
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .orElse(null);
+        return new ProjectSyncDto(watermark, commitCounts.toDto(), issueCounts.toDto(), commentCounts.toDto());
+    }
+
+    private void mergeCommits(String projectId, List<Commit> commits, Counter counts) throws InvalidSyncDeltaException {
+        Map<String, Commit> stored = byId(commitRepository.findAllById(ids(commits, Commit::getId)), Commit::getId);
+        List<String> attach = new ArrayList<>();
+
+        for (Commit commit : commits) {
+            Commit current = stored.get(commit.getId());
+            if (current == null) {
+                entityManager.persist(commit);
+                attach.add(commit.getId());
+                counts.added++;
+                continue;
+            }
+            checkProject(projectId, current.getProjectId(), "Commit " + commit.getId());
+            boolean attached = current.getProjectId() == null;
+            if (attached) {
+                attach.add(commit.getId());
+            }
+            if (sameCommit(current, commit)) {
+                counts.count(attached);
+                continue;
+            }
+            current.setTitle(commit.getTitle());
+            current.setMessage(commit.getMessage());
+            current.setAuthorName(commit.getAuthorName());
+            current.setAuthorEmail(commit.getAuthorEmail());
+            current.setAuthoredDate(commit.getAuthoredDate());
+            current.setWebUrl(commit.getWebUrl());
+            counts.updated++;
+        }
+        if (!attach.isEmpty()) {
+            entityManager.flush();
+            entityManager.createQuery("update Commit c set c.projectId = :projectId where c.id in :ids")
+                    .setParameter("projectId", projectId)
+                    .setParameter("ids", attach)
+                    .executeUpdate();
+            searchIndex.changed(SearchIndex.COMMIT, attach);
+        }
+    }
+
+    private void mergeIssues(String projectId, List<Issue> issues, Counter counts) throws InvalidSyncDeltaException {
+        Map<String, Issue> stored = byId(issueRepository.findAllById(ids(issues, Issue::getId)), Issue::getId);
+        List<String> attach = new ArrayList<>();
+
+        for (Issue issue : issues) {
+            Issue current = stored.get(issue.getId());
+            if (current == null) {
+                issue.setComments(new ArrayList<>());
+                entityManager.persist(issue);
+                attach.add(issue.getId());
+                counts.added++;
+                continue;
+            }
+            checkProject(projectId, current.getProjectId(), "Issue " + issue.getId());
+            boolean attached = current.getProjectId() == null;
+            if (attached) {
+                attach.add(issue.getId());
+            }
+            if (!isNewer(current.getUpdatedAt(), issue.getUpdatedAt()) || sameIssue(current, issue)) {
+                counts.count(attached);
+                continue;
+            }
+            current.setTitle(issue.getTitle());
+            current.setDescription(issue.getDescription());
+            current.setState(issue.getState());
+            current.setCreatedAt(issue.getCreatedAt());
+            current.setUpdatedAt(issue.getUpdatedAt());
+            current.setClosedAt(issue.getClosedAt());
+            current.setAuthor(issue.getAuthor());
+            current.setAssignee(issue.getAssignee());
+            current.setVotes(issue.getVotes());
+            List<String> labels = orEmpty(issue.getLabels());
+            if (!labels.equals(current.getLabels())) {
+                current.setLabels(new ArrayList<>(labels));
+            }
+            counts.updated++;
+        }
+        if (!attach.isEmpty()) {
+            entityManager.flush();
+            entityManager.createQuery("update Issue i set i.projectId = :projectId where i.id in :ids")
+                    .setParameter("projectId", projectId)
+                    .setParameter("ids", attach)
+                    .executeUpdate();
+            searchIndex.changed(SearchIndex.ISSUE, attach);
+            // Comments are indexed under the project of their issue, which they now share
+            searchIndex.changed(SearchIndex.COMMENT, commentRepository.findIdsByIssueIdIn(attach));
+        }
+    }
+
+    private void mergeComments(String projectId, List<Comment> comments, Map<String, String> commentIssues,
+                               Counter counts, Set<String> touchedIssues) throws InvalidSyncDeltaException {
+        Map<String, Comment> stored = byId(commentRepository.findAllById(ids(comments, Comment::getId)), Comment::getId);
+        Map<String, List<String>> attach = new HashMap<>();
+
+        // The issues of the delta are already in the project, only the others have to be checked
+        Set<String> deltaIssues = new HashSet<>(commentIssues.values());
+        Set<String> otherIssues = stored.values().stream()
+                .map(Comment::getIssueId)
+                .filter(issueId -> issueId != null && !deltaIssues.contains(issueId))
+                .collect(Collectors.toSet());
+        if (!otherIssues.isEmpty()) {
+            for (Object[] row : issueRepository.findProjectIdsByIdIn(otherIssues)) {
+                checkProject(projectId, (String) row[1], "Comments of issue " + row[0]);
+            }
+        }
+
+        for (Comment comment : comments) {
+            String issueId = commentIssues.get(comment.getId());
+            Comment current = stored.get(comment.getId());
+            if (current == null) {
+                entityManager.persist(comment);
+                attach.computeIfAbsent(issueId, k -> new ArrayList<>()).add(comment.getId());
+                touchedIssues.add(issueId);
+                counts.added++;
+                continue;
+            }
+            boolean moved = !issueId.equals(current.getIssueId());
+            if (moved) {
+                attach.computeIfAbsent(issueId, k -> new ArrayList<>()).add(comment.getId());
+                touchedIssues.add(issueId);
+                if (current.getIssueId() != null) {
+                    touchedIssues.add(current.getIssueId());
+                }
+            }
+            if (!isNewer(current.getUpdatedAt(), comment.getUpdatedAt()) || sameComment(current, comment)) {
+                counts.count(moved);
+                continue;
+            }
+            touchedIssues.add(issueId);
+            current.setBody(comment.getBody());
+            current.setAuthor(comment.getAuthor());
+            current.setCreatedAt(comment.getCreatedAt());
+            current.setUpdatedAt(comment.getUpdatedAt());
+            counts.updated++;
+        }
+        if (!attach.isEmpty()) {
+            entityManager.flush();
+            for (Map.Entry<String, List<String>> entry : attach.entrySet()) {
+                entityManager.createQuery("update Comment c set c.issueId = :issueId where c.id in :ids")
+                        .setParameter("issueId", entry.getKey())
+                        .setParameter("ids", entry.getValue())
+                        .executeUpdate();
+                searchIndex.changed(SearchIndex.COMMENT, entry.getValue());
+            }
+        }
+    }
+
+    private void removeCommits(String projectId, List<String> ids, Counter counts) {
+        if (!ids.isEmpty()) {
+            counts.removed += entityManager.createQuery(
+                            "delete from Commit c where c.id in :ids and c.projectId = :projectId")
+                    .setParameter("ids", ids)
+                    .setParameter("projectId", projectId)
+                    .executeUpdate();
+            searchIndex.changed(SearchIndex.COMMIT, ids);
+        }
+    }
+
+    // Removed one by one so that their comments and labels go with them
+    private void removeIssues(String projectId, List<String> ids, Counter counts) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (Issue issue : issueRepository.findAllById(ids)) {
+            if (projectId.equals(issue.getProjectId())) {
+                entityManager.remove(issue);
+                counts.removed++;
+            }
+        }
+    }
+
+    private void removeComments(String projectId, List<String> ids, Counter counts, Set<String> touchedIssues) {
+        if (!ids.isEmpty()) {
+            touchedIssues.addAll(entityManager.createQuery("select distinct c.issueId from Comment c where c.id in :ids " +
+                            "and c.issueId in (select i.id from Issue i where i.projectId = :projectId)", String.class)
+                    .setParameter("ids", ids)
+                    .setParameter("projectId", projectId)
+                    .getResultList());
+            counts.removed += entityManager.createQuery("delete from Comment c where c.id in :ids " +
+                            "and c.issueId in (select i.id from Issue i where i.projectId = :projectId)")
+                    .setParameter("ids", ids)
+                    .setParameter("projectId", projectId)
+                    .executeUpdate();
+            searchIndex.changed(SearchIndex.COMMENT, ids);
+        }
+    }
+
+    private static void checkProject(String projectId, String storedProjectId, String child)
+            throws InvalidSyncDeltaException {
+        if (storedProjectId != null && !storedProjectId.equals(projectId)) {
+            throw new InvalidSyncDeltaException(child + " belongs to another project");
+        }
+    }
+
+    // Without both timestamps the incoming copy is compared field by field instead
+    private static boolean isNewer(Instant stored, Instant incoming) {
+        return stored == null || incoming == null || incoming.isAfter(stored);
+    }
+
+    private static boolean sameCommit(Commit stored, Commit incoming) {
+        return Objects.equals(stored.getTitle(), incoming.getTitle())
+                && Objects.equals(stored.getMessage(), incoming.getMessage())
+                && Objects.equals(stored.getAuthorName(), incoming.getAuthorName())
+                && Objects.equals(stored.getAuthorEmail(), incoming.getAuthorEmail())
+                && Objects.equals(stored.getAuthoredDate(), incoming.getAuthoredDate())
+                && Objects.equals(stored.getWebUrl(), incoming.getWebUrl());
+    }
+
+    private static boolean sameIssue(Issue stored, Issue incoming) {
+        return Objects.equals(stored.getTitle(), incoming.getTitle())
+                && Objects.equals(stored.getDescription(), incoming.getDescription())
+                && Objects.equals(stored.getState(), incoming.getState())
+                && Objects.equals(stored.getCreatedAt(), incoming.getCreatedAt())
+                && Objects.equals(stored.getUpdatedAt(), incoming.getUpdatedAt())
+                && Objects.equals(stored.getClosedAt(), incoming.getClosedAt())
+                && Objects.equals(userId(stored.getAuthor()), userId(incoming.getAuthor()))
+                && Objects.equals(userId(stored.getAssignee()), userId(incoming.getAssignee()))
+                && Objects.equals(stored.getVotes(), incoming.getVotes())
+                && orEmpty(incoming.getLabels()).equals(stored.getLabels());
+    }
+
+    private static boolean sameComment(Comment stored, Comment incoming) {
+        return Objects.equals(stored.getBody(), incoming.getBody())
+                && Objects.equals(stored.getCreatedAt(), incoming.getCreatedAt())
+                && Objects.equals(stored.getUpdatedAt(), incoming.getUpdatedAt())
+                && Objects.equals(userId(stored.getAuthor()), userId(incoming.getAuthor()));
+    }
+
+    private static String userId(User user) {
+        return user == null ? null : user.getId();
+    }
+
+    private <T> void validate(List<T> entities, Function<T, String> id) throws InvalidSyncDeltaException {
+        for (T entity : entities) {
+            if (id.apply(entity) == null) {
+                throw new InvalidSyncDeltaException("Every commit, issue and comment needs an id");
+            }
+            Set<ConstraintViolation<T>> violations = validator.validate(entity);
+            if (!violations.isEmpty()) {
+                throw new InvalidSyncDeltaException(violations.iterator().next().getMessage());
+            }
+        }
+    }
+
+    private static <T> List<String> ids(List<T> entities, Function<T, String> id) {
+        return entities.stream().map(id).collect(Collectors.toList());
+    }
+
+    private static <T> Map<String, T> byId(List<T> entities, Function<T, String> id) {
+        return entities.stream().collect(Collectors.toMap(id, Function.identity()));
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    private static class Counter {
+        int added;
+        int updated;
+        int unchanged;
+        int removed;
+
+        boolean changed() {
+            return added + updated + removed > 0;
+        }
+
+        // A child whose fields are unchanged is still updated when it was attached or moved
+        void count(boolean relocated) {
+            if (relocated) {
+                updated++;
+            } else {
+                unchanged++;
+            }
+        }
+
+        ProjectSyncDto.Counts toDto() {
+            return new ProjectSyncDto.Counts(added, updated, unchanged, removed);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.dto.CacheRegionDto;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.cache.CacheManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Invalidation and statistics of the second-level and query caches.
+ *
+ * Hibernate already evicts the entities it updates or deletes and the queries over the tables it
+ * writes to, but replacing the commits or issues of a project rewrites their join columns without
+ * touching the entities, so such a write also drops the children of the project before and after
+ * it from the cache.
+ * Bulk loads set those columns with JPQL updates, after which Hibernate clears the regions itself.
+ * The statistics of the project are dropped as well.
+ */
+@Service
+public class ReadCache {
+
+    public static final String QUERY_RESULTS = "default-query-results-region";
+
+    private static final String[] REGIONS = {"project", "commit", "issue", "comment", "user", QUERY_RESULTS};
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    CacheManager hibernateCacheManager;
+
+    /**
+     * Evicts a project, the given children, which may have been moved in or out of it, and its
+     * statistics. All query results go as well, since results listing an evicted child would load
+     * it on its own.
+     */
+    public void evictProject(String projectId, Collection<String> commitIds, Collection<String> issueIds,
+                             Collection<String> commentIds) {
+        Cache cache = sessionFactory().getCache();
+        cache.evictEntityData(Project.class, projectId);
+        commitIds.forEach(id -> cache.evictEntityData(Commit.class, id));
+        issueIds.forEach(id -> cache.evictEntityData(Issue.class, id));
+        commentIds.forEach(id -> cache.evictEntityData(Comment.class, id));
+        cache.evictQueryRegions();
+        hibernateCacheManager.getCache(ProjectStatistics.CACHE).remove(projectId);
+    }
+
+    /**
+     * Evicts issues once the current transaction commits, or right away outside of one. Query
+     * results go with them, as cached results listing an evicted issue would load it on its own.
+     */
+    public void evictIssuesAfterCommit(Collection<String> ids) {
+        List<String> evicted = new ArrayList<>(ids);
+        afterCommit(() -> evictIssues(evicted));
+    }
+
+    /**
+     * Evicts projects once the current transaction commits, or right away outside of one, for
+     * versions forced up while their children were written. The increment is not seen as a write to
+     * the project table, so query results go with them, or the cached version query would not change.
+     */
+    public void evictProjectsAfterCommit(Collection<String> ids) {
+        List<String> evicted = new ArrayList<>(ids);
+        afterCommit(() -> {
+            Cache cache = sessionFactory().getCache();
+            evicted.forEach(id -> cache.evictEntityData(Project.class, id));
+            cache.evictQueryRegions();
+        });
+    }
+
+    private void evictIssues(List<String> ids) {
+        Cache cache = sessionFactory().getCache();
+        ids.forEach(id -> cache.evictEntityData(Issue.class, id));
+        cache.evictQueryRegions();
+    }
+
+    private static void afterCommit(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+
+    public void evictAll() {
+        sessionFactory().getCache().evictAllRegions();
+        hibernateCacheManager.getCache(ProjectStatistics.CACHE).clear();
+    }
+
+    public List<CacheRegionDto> statistics() {
+        Statistics statistics = sessionFactory().getStatistics();
+        List<CacheRegionDto> regions = new ArrayList<>();
+        for (String region : REGIONS) {
+            CacheRegionStatistics counters = statistics.getCacheRegionStatistics(region);
+            if (counters != null) {
+                regions.add(CacheRegionDto.of(region,
+                        counters.getHitCount(), counters.getMissCount(), counters.getPutCount()));
+            }
+        }
+        return regions;
+    }
+
+    public void resetStatistics() {
+        sessionFactory().getStatistics().clear();
+    }
+
+    private SessionFactory sessionFactory() {
+        return entityManagerFactory.unwrap(SessionFactory.class);
+    }
+}
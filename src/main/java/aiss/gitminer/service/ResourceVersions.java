@@ -0,0 +1,249 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.repository.CommentRepository;
+import aiss.gitminer.repository.IssueRepository;
+import aiss.gitminer.repository.ProjectRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Versions of projects, issues and comments, and the validators derived from them.
+ *
+ * Validators are read with a single query on version columns, so a conditional request answered
+ * with 304 never loads the entity graph. The ETag of a project is its version, which covers the
+ * commits, issues and comments shown with the project: every write through {@link #saveProject}
+ * forces it up, and so does every write to a child stored under the project, through
+ * {@link #touchProjects}. Likewise the ETags of an issue and of its comment list are the version
+ * of the issue, which {@link #touchIssues} forces up whenever one of its comments is added,
+ * removed, moved or changed. Users are not versioned, so editing a user profile alone does not
+ * change the ETags of their work.
+ *
+ * Payloads do not carry versions, so they are copied from the stored rows before saving;
+ * otherwise Hibernate would take existing children for stale copies, or for new ones.
+ */
+@Service
+public class ResourceVersions {
+
+    public record Validator(String etag, Instant lastModified) {
+    }
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    ProjectRepository projectRepository;
+
+    @Autowired
+    IssueRepository issueRepository;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    ReadCache readCache;
+
+    public Optional<Validator> project(String id) {
+        return projectRepository.findVersionById(id).map(version -> new Validator(String.valueOf(version), null));
+    }
+
+    public Optional<Validator> issue(String id) {
+        return issueRepository.findVersionWithCommentsById(id).stream().findFirst()
+                .map(row -> new Validator(String.valueOf(row[0]), latest((Instant) row[1], (Instant) row[2])));
+    }
+
+    public Optional<Validator> issueComments(String id) {
+        return issueRepository.findVersionWithCommentsById(id).stream().findFirst()
+                .map(row -> new Validator(String.valueOf(row[0]), (Instant) row[2]));
+    }
+
+    public Optional<Validator> comment(String id) {
+        return commentRepository.findVersionById(id).stream().findFirst()
+                .map(row -> new Validator(String.valueOf(row[0]), (Instant) row[1]));
+    }
+
+    /**
+     * Sets the ETag and Last-Modified headers and tells whether the client copy is still current.
+     * Only If-None-Match is honoured: updated_at is the time of the change upstream, not of its
+     * ingestion, so a newly mined comment may well be older than the copy the client has.
+     *
+     * The validators stand for the version of the data, whatever format it was sent in: the JSON,
+     * Smile and CBOR bodies of a version differ byte for byte, so the ETag is weak, and caches are
+     * told that the body also depends on Accept. The data changes at any time, so caches must
+     * revalidate on every use rather than guess a freshness lifetime from Last-Modified.
+     */
+    public boolean notModified(ServletWebRequest request, Validator validator) {
+        if (request.getResponse() != null) {
+            request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+            request.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            if (validator.lastModified() != null) {
+                request.getResponse().setDateHeader(HttpHeaders.LAST_MODIFIED, validator.lastModified().toEpochMilli());
+            }
+        }
+        return request.checkNotModified("W/\"" + validator.etag() + "\"");
+    }
+
+    @Transactional
+    public Project saveProject(Project project) {
+        project.setVersion(projectRepository.findVersionById(project.getId()).orElse(null));
+        Set<String> touched = carryOver(project.getIssues());
+        Project saved = entityManager.merge(project);
+        entityManager.lock(saved, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        touchIssues(touched);
+        return saved;
+    }
+
+    @Transactional
+    public Issue saveIssue(Issue issue) {
+        Set<String> touched = carryOver(List.of(issue));
+        Issue saved = entityManager.merge(issue);
+        touchIssues(touched);
+        return saved;
+    }
+
+    /**
+     * Saves a commit on its own. If it was already stored under a project, the version of that
+     * project is forced up as well, as commits are not versioned themselves.
+     */
+    @Transactional
+    public Commit saveCommit(Commit commit) {
+        Commit stored = commit.getId() == null ? null : entityManager.find(Commit.class, commit.getId());
+        String projectId = stored == null ? null : stored.getProjectId();
+        Commit saved = entityManager.merge(commit);
+        if (projectId != null) {
+            touchProjects(List.of(projectId));
+        }
+        return saved;
+    }
+
+    /**
+     * Saves a comment on its own. If it was already stored under an issue and the save changed it,
+     * the versions of that issue and of its project are forced up as well.
+     */
+    @Transactional
+    public Comment saveComment(Comment comment) {
+        Comment stored = comment.getId() == null ? null : entityManager.find(Comment.class, comment.getId());
+        if (stored == null) {
+            comment.setVersion(null);
+            entityManager.persist(comment);
+            return comment;
+        }
+        Long version = stored.getVersion();
+        String issueId = stored.getIssueId();
+        comment.setVersion(version);
+        Comment saved = entityManager.merge(comment);
+        entityManager.flush();
+        if (issueId != null && !version.equals(saved.getVersion())) {
+            touchIssues(List.of(issueId));
+        }
+        return saved;
+    }
+
+    /**
+     * Copies the stored versions onto the issues and comments of a payload, and returns the stored
+     * issues whose comments the payload may change: the issues themselves and the issues their
+     * comments are currently under.
+     */
+    public Set<String> carryOver(List<Issue> issues) {
+        Set<String> touched = new HashSet<>();
+        if (issues == null || issues.isEmpty()) {
+            return touched;
+        }
+        Map<String, Long> issueVersions = versions(ids(issues, Issue::getId), issueRepository::findVersionsByIdIn);
+        touched.addAll(issueVersions.keySet());
+        List<Comment> comments = new ArrayList<>();
+        for (Issue issue : issues) {
+            issue.setVersion(issueVersions.get(issue.getId()));
+            if (issue.getComments() != null) {
+                comments.addAll(issue.getComments());
+            }
+        }
+        List<String> commentIds = ids(comments, Comment::getId);
+        if (!commentIds.isEmpty()) {
+            Map<String, Long> commentVersions = new HashMap<>();
+            for (Object[] row : commentRepository.findVersionsByIdIn(commentIds)) {
+                commentVersions.put((String) row[0], (Long) row[1]);
+                if (row[2] != null) {
+                    touched.add((String) row[2]);
+                }
+            }
+            comments.forEach(comment -> comment.setVersion(commentVersions.get(comment.getId())));
+        }
+        return touched;
+    }
+
+    /**
+     * Forces up the versions of issues whose comments were added, removed, moved or changed in the
+     * current transaction, which does not write the issues themselves, and of the projects they are
+     * stored under. The increment bypasses the second-level cache, so the issues are evicted from it
+     * once the transaction commits.
+     */
+    public void touchIssues(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (Issue issue : issueRepository.findAllById(ids)) {
+            entityManager.lock(issue, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        }
+        readCache.evictIssuesAfterCommit(ids);
+        // Read from the rows, as merging a payload clears the read-only project of the issue in memory
+        Set<String> projectIds = new HashSet<>();
+        for (Object[] row : issueRepository.findProjectIdsByIdIn(ids)) {
+            if (row[1] != null) {
+                projectIds.add((String) row[1]);
+            }
+        }
+        touchProjects(projectIds);
+    }
+
+    /**
+     * Forces up the versions of projects whose children were written on their own in the current
+     * transaction. A project already forced up in it is left as is.
+     */
+    public void touchProjects(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (Project project : projectRepository.findAllById(ids)) {
+            entityManager.lock(project, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        }
+        readCache.evictProjectsAfterCommit(ids);
+    }
+
+    private static Instant latest(Instant a, Instant b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static <T> List<String> ids(List<T> entities, Function<T, String> id) {
+        return entities.stream().map(id).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private static Map<String, Long> versions(List<String> ids, Function<List<String>, List<Object[]>> query) {
+        Map<String, Long> versions = new HashMap<>();
+        if (ids.isEmpty()) {
+            return versions;
+        }
+        for (Object[] row : query.apply(ids)) {
+            versions.put((String) row[0], (Long) row[1]);
+        }
+        return versions;
+    }
+}
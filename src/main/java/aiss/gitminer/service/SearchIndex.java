@@ -0,0 +1,363 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.dto.SearchHitDto;
+import aiss.gitminer.dto.SearchResultsDto;
+import aiss.gitminer.exception.InvalidFilterException;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.repository.CommentRepository;
+import aiss.gitminer.repository.CommitRepository;
+import aiss.gitminer.repository.IssueRepository;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Lucene index over the text of commits (title and message), issues (title and description) and
+ * comments (body), ranked by BM25.
+ *
+ * SearchIndexListener reports every commit, issue and comment written; once the transaction
+ * commits, their rows are read again and indexed on a single background thread, so ingestion
+ * does not wait for the index and searches see new data shortly after. Reading the rows after the
+ * commit is what gives the project id, which the loaders only set with an update after the
+ * inserts, and ids whose row is gone are removed from the index. The index is rebuilt from the
+ * database when it is empty at startup, or on demand.
+ */
+@Service
+public class SearchIndex {
+
+    public static final String COMMIT = "commit";
+    public static final String ISSUE = "issue";
+    public static final String COMMENT = "comment";
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndex.class);
+
+    private static final String KEY = "key";
+    private static final String TYPE = "type";
+    private static final String ID = "id";
+    private static final String PROJECT = "project";
+    private static final String AUTHOR = "author";
+    private static final String STATE = "state";
+    private static final String DATE = "date";
+    private static final String TITLE = "title";
+    private static final String TEXT = "text";
+    private static final String EXCERPT = "excerpt";
+
+    private static final int EXCERPT_LENGTH = 200;
+    // Ids read back from the database per query
+    private static final int CHUNK = 1000;
+
+    @Autowired
+    CommitRepository commitRepository;
+
+    @Autowired
+    IssueRepository issueRepository;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("search-index-"));
+
+    /**
+     * @param indexDir directory of the index, kept in memory when empty
+     */
+    public SearchIndex(@Value("${gitminer.search.index-dir:}") String indexDir) throws IOException {
+        this.directory = indexDir.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(indexDir));
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    /**
+     * Records that a commit, issue or comment was written or removed in the current transaction.
+     */
+    public void changed(Object entity) {
+        if (entity instanceof Commit commit) {
+            changed(COMMIT, List.of(commit.getId()));
+        } else if (entity instanceof Issue issue) {
+            changed(ISSUE, List.of(issue.getId()));
+        } else if (entity instanceof Comment comment) {
+            changed(COMMENT, List.of(comment.getId()));
+        }
+    }
+
+    /**
+     * Same for rows changed without going through the entities, such as bulk updates and deletes.
+     */
+    public void changed(String type, Collection<String> ids) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<String, Set<String>> pending = new HashMap<>();
+            pending.put(type, new HashSet<>(ids));
+            indexer.execute(() -> apply(pending));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Set<String>> pending = (Map<String, Set<String>>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<String, Set<String>> registered = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, registered);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(SearchIndex.this);
+                    if (status == STATUS_COMMITTED) {
+                        indexer.execute(() -> apply(registered));
+                    }
+                }
+            });
+            pending = registered;
+        }
+        pending.computeIfAbsent(type, k -> new HashSet<>()).addAll(ids);
+    }
+
+    /**
+     * @param types   commit, issue or comment; all of them when empty
+     * @param query   words to look for, with the operators of Lucene's simple query syntax
+     *                (+, |, -, "phrase", prefix*)
+     * @param page    from 0, of size hits each; the hits up to the end of the page must fit in an int
+     */
+    public SearchResultsDto search(String query, Set<String> types, String project, String author, String state,
+                                   Instant since, Instant until, int page, int size)
+            throws IOException, InvalidFilterException {
+        if (page < 0 || size < 1 || ((long) page + 1) * size > Integer.MAX_VALUE) {
+            throw new InvalidFilterException("page must be 0 or more and size 1 or more");
+        }
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, Map.of(TITLE, 2.0f, TEXT, 1.0f));
+        BooleanQuery.Builder builder = new BooleanQuery.Builder().add(parser.parse(query), BooleanClause.Occur.MUST);
+        if (!types.isEmpty()) {
+            BooleanQuery.Builder anyType = new BooleanQuery.Builder();
+            types.forEach(type -> anyType.add(new TermQuery(new Term(TYPE, type)), BooleanClause.Occur.SHOULD));
+            builder.add(anyType.build(), BooleanClause.Occur.FILTER);
+        }
+        filter(builder, PROJECT, project);
+        filter(builder, AUTHOR, author);
+        filter(builder, STATE, state);
+        if (since != null || until != null) {
+            builder.add(LongPoint.newRangeQuery(DATE,
+                    since == null ? Long.MIN_VALUE : since.toEpochMilli(),
+                    until == null ? Long.MAX_VALUE : until.toEpochMilli() - 1), BooleanClause.Occur.FILTER);
+        }
+
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs top = searcher.search(builder.build(), (page + 1) * size);
+            List<SearchHitDto> hits = new ArrayList<>();
+            for (int i = page * size; i < top.scoreDocs.length; i++) {
+                hits.add(hit(searcher.doc(top.scoreDocs[i].doc), top.scoreDocs[i].score));
+            }
+            return new SearchResultsDto(top.totalHits.value, top.totalHits.relation == TotalHits.Relation.EQUAL_TO, hits);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Replaces the whole index with the commits, issues and comments in the database, after the
+     * updates already queued. Returns the number of documents of each type.
+     */
+    public Map<String, Integer> rebuild() throws IOException {
+        try {
+            return indexer.submit(this::rebuildNow).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rebuilding the search index", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not rebuild the search index", e.getCause());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void rebuildIfEmpty() {
+        if (writer.getDocStats().numDocs == 0) {
+            indexer.execute(this::rebuildNow);
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException, InterruptedException {
+        indexer.shutdown();
+        indexer.awaitTermination(30, TimeUnit.SECONDS);
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private Map<String, Integer> rebuildNow() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        Map<String, Integer> counts = new TreeMap<>();
+        try {
+            writer.deleteAll();
+            transaction.executeWithoutResult(status -> {
+                counts.put(COMMIT, addAll(commitRepository.streamSearchRows(), SearchIndex::commit));
+                counts.put(ISSUE, addAll(issueRepository.streamSearchRows(), SearchIndex::issue));
+                counts.put(COMMENT, addAll(commentRepository.streamSearchRows(), SearchIndex::comment));
+            });
+            writer.commit();
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Search index rebuilt: {}", counts);
+        return counts;
+    }
+
+    private int addAll(Stream<Object[]> rows, Function<Object[], Document> document) {
+        int[] count = {0};
+        try (rows) {
+            rows.forEach(row -> {
+                try {
+                    writer.addDocument(document.apply(row));
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return count[0];
+    }
+
+    private void apply(Map<String, Set<String>> pending) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        try {
+            transaction.executeWithoutResult(status -> {
+                update(COMMIT, pending.get(COMMIT), commitRepository::findSearchRowsByIdIn, SearchIndex::commit);
+                update(ISSUE, pending.get(ISSUE), issueRepository::findSearchRowsByIdIn, SearchIndex::issue);
+                update(COMMENT, pending.get(COMMENT), commentRepository::findSearchRowsByIdIn, SearchIndex::comment);
+            });
+            writer.commit();
+            searcherManager.maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not update the search index, rebuild it to recover", e);
+        }
+    }
+
+    private void update(String type, Set<String> ids, Function<List<String>, List<Object[]>> rows,
+                        Function<Object[], Document> document) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        List<String> all = new ArrayList<>(ids);
+        try {
+            for (int from = 0; from < all.size(); from += CHUNK) {
+                List<String> chunk = all.subList(from, Math.min(all.size(), from + CHUNK));
+                Set<String> missing = new HashSet<>(chunk);
+                for (Object[] row : rows.apply(chunk)) {
+                    missing.remove((String) row[0]);
+                    writer.updateDocument(new Term(KEY, key(type, (String) row[0])), document.apply(row));
+                }
+                for (String id : missing) {
+                    writer.deleteDocuments(new Term(KEY, key(type, id)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // id, project, author, date, title, message
+    private static Document commit(Object[] row) {
+        return document(COMMIT, (String) row[0], (String) row[1], (String) row[2], null, (Instant) row[3],
+                (String) row[4], (String) row[5]);
+    }
+
+    // id, project, author, state, date, title, description
+    private static Document issue(Object[] row) {
+        return document(ISSUE, (String) row[0], (String) row[1], (String) row[2], (String) row[3], (Instant) row[4],
+                (String) row[5], (String) row[6]);
+    }
+
+    // id, project, author, date, body
+    private static Document comment(Object[] row) {
+        return document(COMMENT, (String) row[0], (String) row[1], (String) row[2], null, (Instant) row[3],
+                null, (String) row[4]);
+    }
+
+    private static Document document(String type, String id, String project, String author, String state,
+                                     Instant date, String title, String text) {
+        Document document = new Document();
+        document.add(new StringField(KEY, key(type, id), Field.Store.NO));
+        document.add(new StringField(TYPE, type, Field.Store.YES));
+        document.add(new StoredField(ID, id));
+        keyword(document, PROJECT, project);
+        keyword(document, AUTHOR, author);
+        keyword(document, STATE, state);
+        if (date != null) {
+            document.add(new LongPoint(DATE, date.toEpochMilli()));
+            document.add(new StoredField(DATE, date.toEpochMilli()));
+        }
+        if (title != null) {
+            document.add(new TextField(TITLE, title, Field.Store.YES));
+        }
+        if (text != null) {
+            document.add(new TextField(TEXT, text, Field.Store.NO));
+            document.add(new StoredField(EXCERPT, text.length() > EXCERPT_LENGTH ? text.substring(0, EXCERPT_LENGTH) : text));
+        }
+        return document;
+    }
+
+    private static SearchHitDto hit(Document document, float score) {
+        IndexableField date = document.getField(DATE);
+        return new SearchHitDto(document.get(TYPE), document.get(ID), document.get(PROJECT), document.get(AUTHOR),
+                document.get(STATE), date == null ? null : Instant.ofEpochMilli(date.numericValue().longValue()),
+                document.get(TITLE), document.get(EXCERPT), score);
+    }
+
+    private static void keyword(Document document, String field, String value) {
+        if (value != null) {
+            document.add(new StringField(field, value, Field.Store.YES));
+        }
+    }
+
+    private static void filter(BooleanQuery.Builder builder, String field, String value) {
+        if (value != null) {
+            builder.add(new TermQuery(new Term(field, value)), BooleanClause.Occur.FILTER);
+        }
+    }
+
+    private static String key(String type, String id) {
+        return type + ":" + id;
+    }
+}
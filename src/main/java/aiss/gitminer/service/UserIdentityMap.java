@@ -0,0 +1,82 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.exception.UserConflictException;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.User;
+import aiss.gitminer.repository.UserRepository;
+
+import java.util.*;
+
+/**
+ * Replaces the users referenced by an ingested payload with their stored, canonical instance.
+ *
+ * Users are identified by username. Every username is upserted at most once over the lifetime of
+ * the map, and all the usernames of a payload are upserted together, so an ingest only touches
+ * the user table once per distinct contributor instead of once per issue or comment.
+ * One map is meant to be used for a single ingest.
+ */
+public class UserIdentityMap {
+
+    private final UserRepository userRepository;
+    private final Map<String, User> users = new HashMap<>();
+
+    public UserIdentityMap(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    public void resolveIssues(List<Issue> issues) throws UserConflictException {
+        if (issues == null) {
+            return;
+        }
+        List<User> referenced = new ArrayList<>();
+        for (Issue issue : issues) {
+            referenced.add(issue.getAuthor());
+            referenced.add(issue.getAssignee());
+            if (issue.getComments() != null) {
+                issue.getComments().forEach(comment -> referenced.add(comment.getAuthor()));
+            }
+        }
+        load(referenced);
+
+        for (Issue issue : issues) {
+            issue.setAuthor(get(issue.getAuthor()));
+            issue.setAssignee(get(issue.getAssignee()));
+            if (issue.getComments() != null) {
+                issue.getComments().forEach(comment -> comment.setAuthor(get(comment.getAuthor())));
+            }
+        }
+    }
+
+    public void resolveComment(Comment comment) throws UserConflictException {
+        comment.setAuthor(resolve(comment.getAuthor()));
+    }
+
+    public User resolve(User user) throws UserConflictException {
+        load(Collections.singletonList(user));
+        return get(user);
+    }
+
+    private void load(List<User> referenced) throws UserConflictException {
+        List<User> missing = new ArrayList<>();
+        for (User user : referenced) {
+            if (user != null && user.getUsername() != null && !users.containsKey(user.getUsername())) {
+                missing.add(user);
+            }
+        }
+        if (!missing.isEmpty()) {
+            users.putAll(userRepository.upsertAll(missing));
+        }
+    }
+
+    // Users without a username cannot be matched, so they are stored as they come
+    private User get(User user) {
+        if (user == null) {
+            return null;
+        }
+        if (user.getUsername() == null) {
+            return userRepository.save(user);
+        }
+        return users.get(user.getUsername());
+    }
+}
@@ -0,0 +1,173 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.dto.IssueDto;
+import aiss.gitminer.dto.ProjectDto;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.repository.CommentRepository;
+import aiss.gitminer.repository.CommitRepository;
+import aiss.gitminer.repository.IssueRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the read views of projects and issues.
+ *
+ * Children are never loaded lazily: each expanded level (commits, issues, labels, comments) is
+ * fetched for all the parents at once, so the number of queries does not depend on how many
+ * projects, issues or comments are returned.
+ */
+@Service
+public class ViewAssembler {
+
+    public static final String COMMITS = "commits";
+    public static final String ISSUES = "issues";
+    public static final String COMMENTS = "comments";
+
+    @Autowired
+    CommitRepository commitRepository;
+
+    @Autowired
+    IssueRepository issueRepository;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    public List<ProjectDto> projects(List<Project> projects, Set<String> expand) {
+        if (projects.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> projectIds = ids(projects, Project::getId);
+
+        Map<String, List<Commit>> commits = null;
+        if (expand.contains(COMMITS)) {
+            commits = group(commitRepository.findByProjectIdIn(projectIds), Commit::getProjectId);
+        }
+
+        Map<String, List<IssueDto>> issues = null;
+        if (expand.contains(ISSUES) || expand.contains(COMMENTS)) {
+            List<Issue> projectIssues = issueRepository.findByProjectIdIn(projectIds);
+            Map<String, List<String>> labels = labels(issueRepository.findLabelsByProjectIdIn(projectIds));
+            Map<String, List<Comment>> comments = expand.contains(COMMENTS)
+                    ? group(commentRepository.findByIssueProjectIdIn(projectIds), Comment::getIssueId)
+                    : null;
+            issues = projectIssues.stream()
+                    .collect(Collectors.groupingBy(Issue::getProjectId, LinkedHashMap::new,
+                            Collectors.mapping(issue -> view(issue, labels, comments), Collectors.toList())));
+        }
+
+        List<ProjectDto> views = new ArrayList<>();
+        for (Project project : projects) {
+            views.add(ProjectDto.of(project,
+                    commits == null ? null : commits.getOrDefault(project.getId(), new ArrayList<>()),
+                    issues == null ? null : issues.getOrDefault(project.getId(), new ArrayList<>())));
+        }
+        return views;
+    }
+
+    public ProjectDto project(Project project, Set<String> expand) {
+        return projects(List.of(project), expand).get(0);
+    }
+
+    /**
+     * Projects with their commit, issue and comment counts, computed by aggregate queries.
+     */
+    public List<ProjectDto> projectSummaries(List<Project> projects, Set<String> expand) {
+        List<ProjectDto> views = projects(projects, expand);
+        if (views.isEmpty()) {
+            return views;
+        }
+        List<String> projectIds = ids(projects, Project::getId);
+        Map<String, Long> commits = counts(commitRepository.countPerProject(projectIds));
+        Map<String, Long> comments = counts(commentRepository.countPerProject(projectIds));
+        Map<String, Long> closedIssues = new HashMap<>();
+        Map<String, Long> issues = new HashMap<>();
+        for (Object[] row : issueRepository.countStatesPerProject(projectIds)) {
+            closedIssues.put((String) row[0], ((Number) row[1]).longValue());
+            issues.put((String) row[0], ((Number) row[2]).longValue());
+        }
+
+        List<ProjectDto> summaries = new ArrayList<>();
+        for (ProjectDto view : views) {
+            long closed = closedIssues.getOrDefault(view.id(), 0L);
+            summaries.add(view.withCounts(commits.getOrDefault(view.id(), 0L),
+                    issues.getOrDefault(view.id(), 0L) - closed, closed,
+                    comments.getOrDefault(view.id(), 0L)));
+        }
+        return summaries;
+    }
+
+    public List<IssueDto> issues(List<Issue> issues, Set<String> expand) {
+        if (issues.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> issueIds = ids(issues, Issue::getId);
+        Map<String, List<String>> labels = labels(issueRepository.findLabelsByIssueIdIn(issueIds));
+        Map<String, List<Comment>> comments = expand.contains(COMMENTS)
+                ? group(commentRepository.findByIssueIdIn(issueIds), Comment::getIssueId)
+                : null;
+
+        List<IssueDto> views = new ArrayList<>();
+        for (Issue issue : issues) {
+            views.add(view(issue, labels, comments));
+        }
+        return views;
+    }
+
+    public IssueDto issue(Issue issue, Set<String> expand) {
+        return issues(List.of(issue), expand).get(0);
+    }
+
+    /**
+     * Issues with their comment count, computed by an aggregate query.
+     */
+    public List<IssueDto> issueSummaries(List<Issue> issues, Set<String> expand) {
+        List<IssueDto> views = issues(issues, expand);
+        if (views.isEmpty()) {
+            return views;
+        }
+        Map<String, Long> comments = counts(commentRepository.countPerIssue(ids(issues, Issue::getId)));
+
+        List<IssueDto> summaries = new ArrayList<>();
+        for (IssueDto view : views) {
+            summaries.add(view.withCommentCount(comments.getOrDefault(view.id(), 0L)));
+        }
+        return summaries;
+    }
+
+    private static IssueDto view(Issue issue, Map<String, List<String>> labels, Map<String, List<Comment>> comments) {
+        return IssueDto.of(issue,
+                labels.getOrDefault(issue.getId(), new ArrayList<>()),
+                comments == null ? null : comments.getOrDefault(issue.getId(), new ArrayList<>()));
+    }
+
+    private static Map<String, List<String>> labels(List<Object[]> rows) {
+        Map<String, List<String>> labels = new HashMap<>();
+        for (Object[] row : rows) {
+            labels.computeIfAbsent((String) row[0], k -> new ArrayList<>()).add((String) row[1]);
+        }
+        return labels;
+    }
+
+    private static Map<String, Long> counts(List<Object[]> rows) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+
+    private static <T> List<String> ids(List<T> entities, Function<T, String> id) {
+        return entities.stream().map(id).collect(Collectors.toList());
+    }
+
+    private static <T> Map<String, List<T>> group(List<T> children, Function<T, String> parentId) {
+        return children.stream().collect(Collectors.groupingBy(parentId, LinkedHashMap::new, Collectors.toList()));
+    }
+}
@@ -0,0 +1,87 @@
+-- Schema of the entities as Hibernate derived it, with one index per repository finder
+
+create table project (
+    id varchar(255) not null,
+    name varchar(255),
+    web_url varchar(255),
+    primary key (id)
+);
+
+create table gmuser (
+    id varchar(255) not null,
+    username varchar(255),
+    name varchar(255),
+    avatar_url varchar(255),
+    web_url varchar(255),
+    primary key (id),
+    constraint idx_user_username unique (username)
+);
+
+create table commit (
+    id varchar(255) not null,
+    title varchar(255),
+    message TEXT,
+    author_name varchar(255),
+    author_email varchar(255),
+    authored_date timestamp not null,
+    web_url varchar(255),
+    project_id varchar(255),
+    primary key (id),
+    constraint fk_commit_project foreign key (project_id) references project
+);
+
+create table issue (
+    id varchar(255) not null,
+    title varchar(255),
+    description TEXT,
+    state varchar(255),
+    created_at timestamp,
+    updated_at timestamp,
+    closed_at timestamp,
+    author_id varchar(255),
+    assignee_id varchar(255),
+    votes integer,
+    project_id varchar(255),
+    primary key (id),
+    constraint fk_issue_author foreign key (author_id) references gmuser,
+    constraint fk_issue_assignee foreign key (assignee_id) references gmuser,
+    constraint fk_issue_project foreign key (project_id) references project
+);
+
+create table issue_labels (
+    issue_id varchar(255) not null,
+    labels varchar(255),
+    constraint fk_issue_labels_issue foreign key (issue_id) references issue
+);
+
+create table comment (
+    id varchar(255) not null,
+    body TEXT,
+    author_id varchar(255),
+    created_at timestamp not null,
+    updated_at timestamp,
+    issue_id varchar(255),
+    fingerprint varchar(32),
+    primary key (id),
+    constraint idx_comment_fingerprint unique (fingerprint),
+    constraint fk_comment_author foreign key (author_id) references gmuser,
+    constraint fk_comment_issue foreign key (issue_id) references issue
+);
+
+create index idx_project_name on project (name);
+create index idx_user_name on gmuser (name);
+
+create index idx_commit_authored_date on commit (authored_date);
+create index idx_commit_author_name on commit (author_name);
+create index idx_commit_project on commit (project_id);
+
+create index idx_issue_created on issue (created_at);
+create index idx_issue_closed on issue (closed_at);
+create index idx_issue_state on issue (state);
+create index idx_issue_author on issue (author_id);
+create index idx_issue_project on issue (project_id);
+create index idx_issue_labels_issue on issue_labels (issue_id);
+
+create index idx_comment_issue_created on comment (issue_id, created_at);
+create index idx_comment_created on comment (created_at);
+create index idx_comment_author on comment (author_id);
@@ -0,0 +1,5 @@
+-- Version counters behind the ETags of projects, issues and comments
+
+alter table project add column version bigint default 0;
+alter table issue add column version bigint default 0;
+alter table comment add column version bigint default 0;
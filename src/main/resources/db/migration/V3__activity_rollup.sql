@@ -0,0 +1,38 @@
+-- Activity per project, day (UTC) and author, maintained by ActivityRollups on every write
+
+create table activity_rollup (
+    project_id varchar(255) not null,
+    activity_day date not null,
+    author varchar(255) not null,
+    commits bigint not null,
+    issues_opened bigint not null,
+    issues_closed bigint not null,
+    comments bigint not null,
+    primary key (project_id, activity_day, author)
+);
+
+-- The rows of a project are recounted over a range of days, which these indexes serve. The
+-- indexes on project_id alone stay, the foreign keys are backed by them.
+create index idx_commit_project_authored on commit (project_id, authored_date);
+create index idx_issue_project_created on issue (project_id, created_at);
+create index idx_issue_project_closed on issue (project_id, closed_at);
+
+-- Backfill of the data stored so far, same counts as ActivityRollups.rebuild
+insert into activity_rollup (project_id, activity_day, author, commits, issues_opened, issues_closed, comments)
+select project_id, activity_day, author, sum(commits), sum(issues_opened), sum(issues_closed), sum(comments) from (
+    select c.project_id, cast(c.authored_date as date) activity_day, coalesce(c.author_name, '') author,
+           1 commits, 0 issues_opened, 0 issues_closed, 0 comments
+    from commit c where c.project_id is not null
+    union all
+    select i.project_id, cast(i.created_at as date), coalesce(u.username, ''), 0, 1, 0, 0
+    from issue i left join gmuser u on u.id = i.author_id
+    where i.project_id is not null and i.created_at is not null
+    union all
+    select i.project_id, cast(i.closed_at as date), coalesce(u.username, ''), 0, 0, 1, 0
+    from issue i left join gmuser u on u.id = i.author_id
+    where i.project_id is not null and i.closed_at is not null
+    union all
+    select i.project_id, cast(m.created_at as date), coalesce(u.username, ''), 0, 0, 0, 1
+    from comment m join issue i on i.id = m.issue_id left join gmuser u on u.id = m.author_id
+    where i.project_id is not null
+) a group by project_id, activity_day, author;
@@ -0,0 +1,5 @@
+-- Pages of the commits and issues of a project in the default order (by id), read in index order
+-- from the last id of the previous page. Orders by date use the (project_id, date) indexes of V3.
+
+create index idx_commit_project_id on commit (project_id, id);
+create index idx_issue_project_id on issue (project_id, id);
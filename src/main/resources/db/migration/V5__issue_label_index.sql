@@ -0,0 +1,2 @@
+-- Issues filtered by label are found through the label values instead of reading every label
+create index idx_issue_labels_label on issue_labels (labels);
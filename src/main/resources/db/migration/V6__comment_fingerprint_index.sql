@@ -0,0 +1,5 @@
+-- Distinct comments may share their body, date and author, such as bot "+1"s posted in the same
+-- second, so the fingerprint only speeds up the duplicate lookup instead of forbidding them.
+
+alter table comment drop constraint idx_comment_fingerprint;
+create index idx_comment_fingerprint on comment (fingerprint);
@@ -0,0 +1,94 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The activity rollups follow every write and agree with the raw tables; the check finds rows that
+ * drifted and a rebuild restores them.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ActivityRollupTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void rollupsFollowWrites() throws Exception {
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"rolled\",\"name\":\"rolled\",\"web_url\":\"https://example.com\",\"commits\":[" +
+                        commit("rolled-commit-1", "ann", "2023-03-01T10:00:00Z") + "," +
+                        commit("rolled-commit-2", "bob", "2023-03-01T23:30:00Z") + "]," +
+                        "\"issues\":[{\"id\":\"rolled-issue-1\",\"title\":\"issue\",\"state\":\"opened\"," +
+                        "\"created_at\":\"2023-03-02T00:00:00Z\",\"updated_at\":\"2023-03-02T00:00:00Z\",\"comments\":[" +
+                        "{\"id\":\"rolled-comment-1\",\"body\":\"seen\",\"created_at\":\"2023-03-02T12:00:00Z\"," +
+                        "\"author\":{\"username\":\"ann\"}}]}]}"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/gitminer/projects/rolled/activity"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].day").value("2023-03-01"))
+                .andExpect(jsonPath("$[0].commits").value(2))
+                .andExpect(jsonPath("$[1].issues_opened").value(1))
+                .andExpect(jsonPath("$[1].comments").value(1));
+        mockMvc.perform(get("/gitminer/projects/rolled/activity?author=ann&since=2023-03-02"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].commits").value(0))
+                .andExpect(jsonPath("$[0].comments").value(1));
+
+        // Closes the issue on another day, moves a commit and removes the comment
+        mockMvc.perform(patch("/gitminer/projects/rolled/sync").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"commits\":[" + commit("rolled-commit-2", "bob", "2023-03-05T10:00:00Z") + "]," +
+                        "\"issues\":[{\"id\":\"rolled-issue-1\",\"title\":\"issue\",\"state\":\"closed\"," +
+                        "\"created_at\":\"2023-03-02T00:00:00Z\",\"updated_at\":\"2023-03-04T00:00:00Z\"," +
+                        "\"closed_at\":\"2023-03-04T00:00:00Z\",\"comments\":[]}]," +
+                        "\"removed_comments\":[\"rolled-comment-1\"]}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/gitminer/comments").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"rolled-comment-2\",\"body\":\"orphan\",\"created_at\":\"2023-03-07T00:00:00Z\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/gitminer/projects/rolled/activity?interval=week"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].day").value("2023-02-27"))
+                .andExpect(jsonPath("$[0].commits").value(2))
+                .andExpect(jsonPath("$[0].issues_opened").value(1))
+                .andExpect(jsonPath("$[0].issues_closed").value(1))
+                .andExpect(jsonPath("$[0].comments").value(0));
+        mockMvc.perform(get("/gitminer/rollups/check?project=rolled"))
+                .andExpect(jsonPath("$.rows").value(4))
+                .andExpect(jsonPath("$.mismatched").value(0));
+
+        jdbcTemplate.update("delete from activity_rollup where project_id = 'rolled' and author = 'bob'");
+        mockMvc.perform(get("/gitminer/rollups/check?project=rolled"))
+                .andExpect(jsonPath("$.mismatched").value(1))
+                .andExpect(jsonPath("$.mismatches[0].author").value("bob"))
+                .andExpect(jsonPath("$.mismatches[0].expected.commits").value(1));
+        // Also backfills what other tests stored through the repositories, around the ingest paths
+        mockMvc.perform(post("/gitminer/rollups/rebuild"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/gitminer/rollups/check"))
+                .andExpect(jsonPath("$.mismatched").value(0));
+    }
+
+    private static String commit(String id, String author, String date) {
+        return "{\"id\":\"" + id + "\",\"title\":\"title\",\"author_name\":\"" + author + "\",\"web_url\":\"url\"," +
+                "\"authored_date\":\"" + date + "\"}";
+    }
+}
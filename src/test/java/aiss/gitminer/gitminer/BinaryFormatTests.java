@@ -0,0 +1,77 @@
+package aiss.gitminer.gitminer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Smile and CBOR clients send and get the same documents as JSON ones, and JSON stays the default.
+ * The bodies differ, so their shared ETag is weak.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class BinaryFormatTests {
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void binaryFormatsRoundTrip() throws Exception {
+        ObjectMapper json = new ObjectMapper();
+        ObjectMapper smile = new ObjectMapper(new SmileFactory());
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+        JsonNode project = json.readTree("{\"id\":\"binary\",\"name\":\"binary\",\"web_url\":\"https://example.com\"," +
+                "\"commits\":[],\"issues\":[{\"id\":\"binary-issue\",\"title\":\"issue\",\"state\":\"opened\"," +
+                "\"created_at\":\"2023-01-01T00:00:00Z\",\"comments\":[]}]}");
+
+        mockMvc.perform(post("/gitminer/projects").contentType(SMILE).accept(SMILE)
+                        .content(smile.writeValueAsBytes(project)))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(SMILE));
+        mockMvc.perform(post("/gitminer/comments").contentType(CBOR).content(cbor.writeValueAsBytes(json.readTree(
+                        "{\"id\":\"binary-comment\",\"body\":\"sent as cbor\",\"created_at\":\"2023-01-01T00:00:00Z\"}"))))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+
+        JsonNode asJson = json.readTree(mockMvc.perform(get("/gitminer/issues/binary-issue"))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray());
+        JsonNode asSmile = smile.readTree(mockMvc.perform(get("/gitminer/issues/binary-issue").accept(SMILE))
+                .andExpect(content().contentType(SMILE))
+                .andReturn().getResponse().getContentAsByteArray());
+        JsonNode asCbor = cbor.readTree(mockMvc.perform(get("/gitminer/issues/binary-issue").accept(CBOR))
+                .andExpect(content().contentType(CBOR))
+                .andReturn().getResponse().getContentAsByteArray());
+        assertEquals("binary-issue", asJson.get("id").asText());
+        assertEquals(asJson, asSmile);
+        assertEquals(asJson, asCbor);
+
+        String etag = mockMvc.perform(get("/gitminer/issues/binary-issue").accept(SMILE))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertTrue(etag.startsWith("W/"), etag);
+        mockMvc.perform(get("/gitminer/issues/binary-issue").accept(CBOR).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        JsonNode comment = cbor.readTree(mockMvc.perform(get("/gitminer/comments/binary-comment").accept(CBOR))
+                .andReturn().getResponse().getContentAsByteArray());
+        assertEquals("sent as cbor", comment.get("body").asText());
+    }
+}
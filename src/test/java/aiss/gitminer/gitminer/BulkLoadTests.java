@@ -0,0 +1,114 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * A bulk load attaches every child to its parent across batches, and a malformed or conflicting
+ * stream is rejected as a whole.
+ */
+@SpringBootTest(properties = "gitminer.bulk.batch-size=3")
+@AutoConfigureMockMvc
+class BulkLoadTests {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void childrenAreAttachedAcrossBatches() throws Exception {
+        StringJoiner lines = new StringJoiner("\n");
+        lines.add(project("bulked"));
+        lines.add("{\"type\":\"user\",\"username\":\"bulk-ann\",\"name\":\"Ann\"}");
+        for (int i = 0; i < 7; i++) {
+            lines.add(commit("bulked-commit-" + i));
+        }
+        for (int i = 0; i < 3; i++) {
+            lines.add(issue("bulked-issue-" + i));
+            for (int c = 0; c < 2; c++) {
+                lines.add(comment("bulked-issue-" + i, "bulked-comment-" + i + "-" + c));
+            }
+        }
+
+        mockMvc.perform(post("/gitminer/projects/bulk").contentType(NDJSON).content(lines.toString()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.project").value(1))
+                .andExpect(jsonPath("$.users").value(1))
+                .andExpect(jsonPath("$.commits").value(7))
+                .andExpect(jsonPath("$.issues").value(3))
+                .andExpect(jsonPath("$.comments").value(6));
+
+        mockMvc.perform(get("/gitminer/projects/bulked/commits?size=50"))
+                .andExpect(jsonPath("$.length()").value(7));
+        mockMvc.perform(get("/gitminer/projects/bulked/issues?size=50"))
+                .andExpect(jsonPath("$.length()").value(3));
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/gitminer/issues/bulked-issue-" + i + "/comments?size=50"))
+                    .andExpect(jsonPath("$.length()").value(2))
+                    .andExpect(jsonPath("$[0].author.username").value("bulk-ann"));
+        }
+    }
+
+    @Test
+    void invalidStreamsAreRejected() throws Exception {
+        mockMvc.perform(post("/gitminer/projects/bulk").contentType(NDJSON)
+                        .content(project("stored") + "\n" + commit("stored-commit") + "\n" + issue("stored-issue")))
+                .andExpect(status().isCreated());
+
+        for (String body : List.of(
+                "",
+                "[]",
+                "{\"id\":\"rejected\"}",
+                commit("rejected-commit"),
+                project("rejected") + "\n{\"type\":\"tag\",\"id\":\"v1\"}",
+                project("rejected") + "\n{\"type\":\"commit\",\"id\":",
+                project("rejected") + "\n" + project("rejected-twice"),
+                project("rejected") + "\n{\"type\":\"commit\",\"title\":\"no id\"}",
+                project("rejected") + "\n{\"type\":\"comment\",\"id\":\"orphan\",\"body\":\"body\",\"created_at\":\"2023-01-01T00:00:00Z\"}",
+                project("rejected") + "\n" + comment("rejected-issue", "early-comment") + "\n" + issue("rejected-issue"),
+                project("rejected") + "\n" + comment("stored-issue", "stolen-comment"),
+                project("rejected") + "\n" + commit("stored-commit"),
+                project("rejected") + "\n" + commit("twice") + "\n" + commit("twice"),
+                project("stored"))) {
+            mockMvc.perform(post("/gitminer/projects/bulk").contentType(NDJSON).content(body))
+                    .andExpect(status().isBadRequest());
+        }
+
+        mockMvc.perform(get("/gitminer/projects/rejected")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/gitminer/projects/stored/commits"))
+                .andExpect(jsonPath("$.length()").value(1));
+        mockMvc.perform(get("/gitminer/issues/stored-issue/comments"))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    private static String project(String id) {
+        return "{\"type\":\"project\",\"id\":\"" + id + "\",\"name\":\"" + id + "\",\"web_url\":\"https://example.com\"}";
+    }
+
+    private static String commit(String id) {
+        return "{\"type\":\"commit\",\"id\":\"" + id + "\",\"title\":\"title\",\"author_name\":\"ann\"," +
+                "\"web_url\":\"url\",\"authored_date\":\"2023-01-01T00:00:00Z\"}";
+    }
+
+    private static String issue(String id) {
+        return "{\"type\":\"issue\",\"id\":\"" + id + "\",\"title\":\"issue\",\"state\":\"opened\"," +
+                "\"created_at\":\"2023-01-01T00:00:00Z\",\"author\":{\"username\":\"bulk-ann\"}}";
+    }
+
+    private static String comment(String issueId, String id) {
+        return "{\"type\":\"comment\",\"issue_id\":\"" + issueId + "\",\"id\":\"" + id + "\",\"body\":\"body of " + id +
+                "\",\"created_at\":\"2023-01-01T00:00:00Z\",\"author\":{\"username\":\"bulk-ann\"}}";
+    }
+}
@@ -0,0 +1,117 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.User;
+import aiss.gitminer.service.CommentFingerprintIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * POST /comments returns the stored copy of a comment already ingested under another id, while
+ * the project, issue and bulk ingestion keep distinct comments that happen to share their content.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CommentDeduplicationTests {
+
+    private static final Instant CREATED = Instant.parse("2023-01-01T00:00:00Z");
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    CommentFingerprintIndex commentFingerprintIndex;
+
+    @Test
+    void fingerprintCoversBodyDateAndAuthor() {
+        String fingerprint = comment("a", "+1", CREATED, "ann").contentFingerprint();
+
+        assertEquals(32, fingerprint.length());
+        assertEquals(fingerprint, comment("b", "+1", CREATED, "ann").contentFingerprint());
+        assertNotEquals(fingerprint, comment("a", "+2", CREATED, "ann").contentFingerprint());
+        assertNotEquals(fingerprint, comment("a", "+1", CREATED.plusSeconds(1), "ann").contentFingerprint());
+        assertNotEquals(fingerprint, comment("a", "+1", CREATED, "bob").contentFingerprint());
+        assertNotEquals(fingerprint, comment("a", "+1", CREATED, null).contentFingerprint());
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegatives() {
+        for (int i = 0; i < 1000; i++) {
+            String fingerprint = comment("bloom-" + i, "body " + i, CREATED, "ann").contentFingerprint();
+            commentFingerprintIndex.add(fingerprint);
+            assertTrue(commentFingerprintIndex.mightContain(fingerprint));
+        }
+        int positives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (commentFingerprintIndex.mightContain(comment("unseen", UUID.randomUUID().toString(), CREATED, "ann").contentFingerprint())) {
+                positives++;
+            }
+        }
+        assertTrue(positives < 50, positives + " false positives");
+    }
+
+    @Test
+    void postedDuplicateReturnsTheStoredComment() throws Exception {
+        mockMvc.perform(post("/gitminer/comments").contentType(MediaType.APPLICATION_JSON)
+                        .content(json("posted-1", "same body")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("posted-1"));
+        mockMvc.perform(post("/gitminer/comments").contentType(MediaType.APPLICATION_JSON)
+                        .content(json("posted-2", "same body")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("posted-1"));
+        mockMvc.perform(get("/gitminer/comments/posted-2")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void ingestionKeepsDistinctCommentsWithTheSameContent() throws Exception {
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"plus-one\",\"name\":\"plus-one\",\"web_url\":\"https://example.com\",\"commits\":[]," +
+                        "\"issues\":[{\"id\":\"plus-one-issue\",\"title\":\"issue\",\"state\":\"opened\"," +
+                        "\"created_at\":\"2023-01-01T00:00:00Z\",\"comments\":[" +
+                        json("plus-one-1", "+1") + "," + json("plus-one-2", "+1") + "]}]}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/gitminer/issues/plus-one-issue/comments"))
+                .andExpect(jsonPath("$.length()").value(2));
+
+        mockMvc.perform(post("/gitminer/issues").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"plus-one-posted\",\"title\":\"issue\",\"state\":\"opened\"," +
+                        "\"created_at\":\"2023-01-01T00:00:00Z\",\"comments\":[" +
+                        json("plus-one-3", "+1") + "," + json("plus-one-4", "+1") + "]}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/gitminer/issues/plus-one-posted/comments"))
+                .andExpect(jsonPath("$.length()").value(2));
+
+        mockMvc.perform(post("/gitminer/projects/bulk").contentType("application/x-ndjson").content(
+                        "{\"type\":\"project\",\"id\":\"plus-one-bulk\",\"name\":\"bulk\",\"web_url\":\"https://example.com\"}\n" +
+                        "{\"type\":\"issue\",\"id\":\"plus-one-bulk-issue\",\"title\":\"issue\",\"state\":\"opened\"}\n" +
+                        "{\"type\":\"comment\",\"issue_id\":\"plus-one-bulk-issue\"," + json("plus-one-5", "+1").substring(1) + "\n" +
+                        "{\"type\":\"comment\",\"issue_id\":\"plus-one-bulk-issue\"," + json("plus-one-6", "+1").substring(1)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.comments").value(2));
+    }
+
+    private static Comment comment(String id, String body, Instant createdAt, String author) {
+        return new Comment(id, body, author == null ? null : new User(author, author, null, null), createdAt, null);
+    }
+
+    private static String json(String id, String body) {
+        return "{\"id\":\"" + id + "\",\"body\":\"" + body + "\",\"created_at\":\"2023-01-01T00:00:00Z\"," +
+                "\"author\":{\"username\":\"bot\"}}";
+    }
+}
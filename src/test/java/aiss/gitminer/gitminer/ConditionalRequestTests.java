@@ -0,0 +1,119 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The ETags of an issue and of its comments change whenever one of its comments does, even when
+ * the comments that replace each other have the same version, and the ETag of a project whenever
+ * one of its children does. Caches must revalidate them on every use.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ConditionalRequestTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void replacingACommentChangesTheIssueETags() throws Exception {
+        postIssue(comment("conditional-comment-1", "first"));
+        String issue = etag("/gitminer/issues/conditional-issue");
+        String comments = etag("/gitminer/issues/conditional-issue/comments");
+        mockMvc.perform(get("/gitminer/issues/conditional-issue").header(HttpHeaders.IF_NONE_MATCH, issue))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+
+        postIssue(comment("conditional-comment-2", "second"));
+        assertNotEquals(issue, etag("/gitminer/issues/conditional-issue"));
+        assertNotEquals(comments, etag("/gitminer/issues/conditional-issue/comments"));
+        mockMvc.perform(get("/gitminer/issues/conditional-issue/comments").header(HttpHeaders.IF_NONE_MATCH, comments))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value("conditional-comment-2"));
+    }
+
+    @Test
+    void editingACommentChangesTheIssueETags() throws Exception {
+        mockMvc.perform(post("/gitminer/issues").contentType(MediaType.APPLICATION_JSON)
+                        .content(issue("edited-issue", comment("edited-comment", "before"))))
+                .andExpect(status().isOk());
+        String issue = etag("/gitminer/issues/edited-issue");
+
+        mockMvc.perform(post("/gitminer/comments").contentType(MediaType.APPLICATION_JSON)
+                        .content(comment("edited-comment", "after")))
+                .andExpect(status().isOk());
+        assertNotEquals(issue, etag("/gitminer/issues/edited-issue"));
+        mockMvc.perform(get("/gitminer/issues/edited-issue/comments"))
+                .andExpect(jsonPath("$[0].body").value("after"));
+    }
+
+    @Test
+    void writingAChildOnItsOwnChangesTheProjectETag() throws Exception {
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"conditional-project\",\"name\":\"project\",\"web_url\":\"url\"," +
+                        "\"commits\":[" + commit("before") + "]," +
+                        "\"issues\":[" + issue("project-issue", comment("project-comment", "before")) + "]}"))
+                .andExpect(status().isCreated());
+        String project = etag("/gitminer/projects/conditional-project");
+
+        mockMvc.perform(post("/gitminer/comments").contentType(MediaType.APPLICATION_JSON)
+                        .content(comment("project-comment", "after")))
+                .andExpect(status().isOk());
+        String afterComment = etag("/gitminer/projects/conditional-project");
+        assertNotEquals(project, afterComment);
+
+        mockMvc.perform(post("/gitminer/issues").contentType(MediaType.APPLICATION_JSON)
+                        .content(issue("project-issue", comment("project-comment", "after"))))
+                .andExpect(status().isOk());
+        String afterIssue = etag("/gitminer/projects/conditional-project");
+        assertNotEquals(afterComment, afterIssue);
+
+        mockMvc.perform(post("/gitminer/commits").contentType(MediaType.APPLICATION_JSON)
+                        .content(commit("after")))
+                .andExpect(status().isOk());
+        assertNotEquals(afterIssue, etag("/gitminer/projects/conditional-project"));
+        mockMvc.perform(get("/gitminer/projects/conditional-project"))
+                .andExpect(jsonPath("$.commits[0].title").value("after"))
+                .andExpect(jsonPath("$.issues[0].comments[0].body").value("after"));
+    }
+
+    private void postIssue(String comment) throws Exception {
+        mockMvc.perform(post("/gitminer/issues").contentType(MediaType.APPLICATION_JSON)
+                        .content(issue("conditional-issue", comment)))
+                .andExpect(status().isOk());
+    }
+
+    private String etag(String url) throws Exception {
+        return mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private static String issue(String id, String comment) {
+        return "{\"id\":\"" + id + "\",\"title\":\"issue\",\"state\":\"opened\"," +
+                "\"created_at\":\"2023-01-01T00:00:00Z\",\"comments\":[" + comment + "]}";
+    }
+
+    private static String commit(String title) {
+        return "{\"id\":\"project-commit\",\"title\":\"" + title + "\",\"message\":\"message\"," +
+                "\"author_name\":\"ann\",\"authored_date\":\"2023-01-01T00:00:00Z\",\"web_url\":\"url\"}";
+    }
+
+    private static String comment(String id, String body) {
+        return "{\"id\":\"" + id + "\",\"body\":\"" + body + "\",\"created_at\":\"2023-01-01T00:00:00Z\"}";
+    }
+}
@@ -0,0 +1,86 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.exception.IngestionQueueFullException;
+import aiss.gitminer.service.IngestionJob;
+import aiss.gitminer.service.IngestionQueue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Async POSTs are answered with a job that reports what was stored once it is done, and a full
+ * queue rejects new jobs.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class IngestionQueueTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void asyncCommitIsStoredByAJob() throws Exception {
+        String job = mockMvc.perform(post("/gitminer/commits?async=true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"async-commit\",\"title\":\"title\",\"author_name\":\"author\"," +
+                                "\"web_url\":\"url\",\"authored_date\":\"2023-01-01T00:00:00Z\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.received.commits").value(1))
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+
+        for (int i = 0; i < 100 && !mockMvc.perform(get(job)).andReturn().getResponse()
+                .getContentAsString().contains("\"succeeded\""); i++) {
+            Thread.sleep(50);
+        }
+        mockMvc.perform(get(job))
+                .andExpect(jsonPath("$.status").value("succeeded"))
+                .andExpect(jsonPath("$.stored.commits").value(1))
+                .andExpect(jsonPath("$.resource").value("/gitminer/commits/async-commit"));
+        mockMvc.perform(get("/gitminer/commits/async-commit")).andExpect(status().isOk());
+    }
+
+    @Test
+    void fullQueueRejectsJobs() throws Exception {
+        IngestionQueue queue = new IngestionQueue(1, 1, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        try {
+            IngestionJob first = queue.submit("test", Map.of(), job -> {
+                running.countDown();
+                release.await();
+                return null;
+            });
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            IngestionJob second = queue.submit("test", Map.of(), job -> null);
+            assertThrows(IngestionQueueFullException.class, () -> queue.submit("test", Map.of(), job -> null));
+            assertEquals(IngestionJob.Status.RUNNING, first.getStatus());
+            assertEquals(IngestionJob.Status.QUEUED, second.getStatus());
+
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (second.getStatus() != IngestionJob.Status.SUCCEEDED && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(IngestionJob.Status.SUCCEEDED, second.getStatus());
+        } finally {
+            release.countDown();
+            queue.shutdown();
+        }
+    }
+}
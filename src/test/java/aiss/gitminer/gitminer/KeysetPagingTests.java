@@ -0,0 +1,116 @@
+package aiss.gitminer.gitminer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Cursors carry the order, sort key and id of the last row, walk every row exactly once with null
+ * keys first in ascending order and last in descending order, and are refused when tampered with.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class KeysetPagingTests {
+
+    private static final String ISSUES = "/gitminer/issues?project=paged&size=2";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeAll
+    void createProject() throws Exception {
+        // Two issues share each closing date, and two are still open
+        StringJoiner issues = new StringJoiner(",");
+        String[] closedAt = {"2023-03-01", null, "2023-02-01", "2023-03-01", null, "2023-02-01", "2023-01-01"};
+        for (int i = 0; i < closedAt.length; i++) {
+            issues.add("{\"id\":\"paged-issue-" + i + "\",\"title\":\"issue\",\"state\":\"closed\"," +
+                    "\"created_at\":\"2023-01-01T00:00:00Z\"" +
+                    (closedAt[i] == null ? "" : ",\"closed_at\":\"" + closedAt[i] + "T00:00:00Z\"") + "}");
+        }
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"paged\",\"name\":\"paged\",\"web_url\":\"https://example.com\",\"commits\":[]," +
+                        "\"issues\":[" + issues + "]}"))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void cursorHoldsTheLastRow() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get(ISSUES + "&order=-closedAt&after="))
+                .andExpect(status().isOk()).andReturn().getResponse();
+        JsonNode page = objectMapper.readTree(response.getContentAsString());
+        JsonNode cursor = objectMapper.readTree(Base64.getUrlDecoder().decode(response.getHeader("X-Next-Cursor")));
+
+        assertEquals("-closedAt", cursor.get("order").asText());
+        assertEquals(page.get(1).get("id").asText(), cursor.get("id").asText());
+        assertEquals("paged-issue-0", cursor.get("id").asText());
+        assertEquals("2023-03-01T00:00:00Z", cursor.get("key").asText());
+    }
+
+    @Test
+    void pagesWalkEveryRowOnce() throws Exception {
+        assertEquals(List.of("paged-issue-1", "paged-issue-4", "paged-issue-6", "paged-issue-2", "paged-issue-5",
+                "paged-issue-0", "paged-issue-3"), walk("closedAt"));
+        assertEquals(List.of("paged-issue-3", "paged-issue-0", "paged-issue-5", "paged-issue-2", "paged-issue-6",
+                "paged-issue-4", "paged-issue-1"), walk("-closedAt"));
+        assertEquals(List.of("paged-issue-0", "paged-issue-1", "paged-issue-2", "paged-issue-3", "paged-issue-4",
+                "paged-issue-5", "paged-issue-6"), walk(null));
+    }
+
+    @Test
+    void tamperedCursorsAreRefused() throws Exception {
+        String cursor = mockMvc.perform(get(ISSUES + "&order=closedAt&after="))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+
+        for (String after : List.of("not base64!", encode("not json"), encode("{\"order\":\"closedAt\"}"),
+                encode("[]"))) {
+            mockMvc.perform(get(ISSUES + "&order=closedAt&after=" + after))
+                    .andExpect(status().isBadRequest());
+        }
+        // A cursor only continues the order it was made for
+        mockMvc.perform(get(ISSUES + "&order=-closedAt&after=" + cursor))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(ISSUES + "&order=closedAt&after=" + cursor))
+                .andExpect(status().isOk());
+    }
+
+    private List<String> walk(String order) throws Exception {
+        List<String> ids = new ArrayList<>();
+        String cursor = "";
+        for (int pages = 0; cursor != null; pages++) {
+            assertTrue(pages < 5, "too many pages");
+            MockHttpServletResponse response = mockMvc.perform(get(ISSUES + (order == null ? "" : "&order=" + order)
+                            + "&after=" + cursor))
+                    .andExpect(status().isOk()).andReturn().getResponse();
+            objectMapper.readTree(response.getContentAsString()).forEach(issue -> ids.add(issue.get("id").asText()));
+            cursor = response.getHeader("X-Next-Cursor");
+        }
+        return ids;
+    }
+
+    private static String encode(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+}
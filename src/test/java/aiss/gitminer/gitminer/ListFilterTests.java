@@ -0,0 +1,95 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.StringJoiner;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Filters combine and take several values, and filters or orders without an index are refused.
+ * Rows with the same sort key keep their place from one page to the next.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ListFilterTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void filtersCombine() throws Exception {
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"filtered\",\"name\":\"filtered\",\"web_url\":\"https://example.com\",\"commits\":[]," +
+                        "\"issues\":[" + issue("filtered-issue-1", "opened", "filter-ann", "filter-bug", "2023-01-01") + "," +
+                        issue("filtered-issue-2", "closed", "filter-ann", "filter-bug", "2023-02-01") + "," +
+                        issue("filtered-issue-3", "opened", "filter-bob", "filter-bug", "2023-03-01") + "," +
+                        issue("filtered-issue-4", "opened", "filter-ann", "filter-docs", "2023-04-01") + "]}"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/gitminer/issues?label=filter-bug&author=filter-ann&state=opened,closed&order=id&size=10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value("filtered-issue-1"))
+                .andExpect(jsonPath("$[1].id").value("filtered-issue-2"));
+        mockMvc.perform(get("/gitminer/issues?label=filter-bug&label=filter-docs&state=opened&since=2023-02-15T00:00:00Z&size=10"))
+                .andExpect(jsonPath("$.length()").value(2));
+        // The project narrows the rows, so any order is fine within it
+        mockMvc.perform(get("/gitminer/projects/filtered/issues?order=-title&author=filter-ann&size=10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3));
+    }
+
+    @Test
+    void fullScansAreRefused() throws Exception {
+        // No index on the title
+        mockMvc.perform(get("/gitminer/issues?title=crash"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/gitminer/commits?order=title"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/gitminer/commits?order=title&authorName=nobody"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/gitminer/comments?since=yesterday"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void tiesKeepTheirPlaceAcrossPages() throws Exception {
+        StringJoiner comments = new StringJoiner(",");
+        for (int i = 4; i >= 1; i--) {
+            comments.add("{\"id\":\"tied-comment-" + i + "\",\"body\":\"tied " + i + "\",\"created_at\":\"2023-01-01T00:00:00Z\"}");
+        }
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"tied\",\"name\":\"tied\",\"web_url\":\"https://example.com\",\"commits\":[]," +
+                        "\"issues\":[" + issue("tied-issue-3", "opened", "filter-ann", "filter-bug", "2023-01-01") + "," +
+                        issue("tied-issue-1", "opened", "filter-ann", "filter-bug", "2023-01-01") + "," +
+                        issue("tied-issue-2", "opened", "filter-ann", "filter-bug", "2023-01-01").replace(
+                                "\"comments\":[]", "\"comments\":[" + comments + "]") + "]}"))
+                .andExpect(status().isCreated());
+
+        for (int page = 0; page < 3; page++) {
+            mockMvc.perform(get("/gitminer/issues?project=tied&order=-createdAt&size=1&page=" + page))
+                    .andExpect(jsonPath("$[0].id").value("tied-issue-" + (page + 1)));
+        }
+        for (int page = 0; page < 4; page++) {
+            mockMvc.perform(get("/gitminer/issues/tied-issue-2/comments?size=1&page=" + page))
+                    .andExpect(jsonPath("$[0].id").value("tied-comment-" + (page + 1)));
+            mockMvc.perform(get("/gitminer/issues/tied-issue-2/comments?order=-created_at&size=1&page=" + page))
+                    .andExpect(jsonPath("$[0].id").value("tied-comment-" + (page + 1)));
+        }
+    }
+
+    private static String issue(String id, String state, String author, String label, String day) {
+        return "{\"id\":\"" + id + "\",\"title\":\"" + id + "\",\"state\":\"" + state + "\"," +
+                "\"author\":{\"username\":\"" + author + "\"},\"labels\":[\"" + label + "\"]," +
+                "\"created_at\":\"" + day + "T00:00:00Z\",\"comments\":[]}";
+    }
+}
@@ -0,0 +1,113 @@
+package aiss.gitminer.gitminer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Closed-loop load generator: each client sends its next request as soon as the previous one is
+ * answered, for a fixed duration, and the latency of every request is recorded.
+ */
+class LoadDriver {
+
+    record Result(String name, long requests, long errors, double seconds, long p50Micros, long p99Micros,
+                  long p999Micros) {
+
+        double throughput() {
+            return requests / seconds;
+        }
+
+        double errorRate() {
+            return requests == 0 ? 0.0 : (double) errors / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-24s %8d req %8.1f req/s  p50 %6.2f ms  p99 %7.2f ms  p999 %7.2f ms  errors %.2f%%",
+                    name, requests, throughput(), p50Micros / 1000.0, p99Micros / 1000.0, p999Micros / 1000.0,
+                    errorRate() * 100);
+        }
+    }
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+    /**
+     * @param requests builds the next request of a client; called concurrently
+     */
+    Result run(String name, int clients, Duration duration, Supplier<HttpRequest> requests)
+            throws InterruptedException {
+        List<long[]> latencies = new ArrayList<>();
+        AtomicLong errors = new AtomicLong();
+        long end = System.nanoTime() + duration.toNanos();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<LatencyLog> logs = new ArrayList<>();
+
+        for (int i = 0; i < clients; i++) {
+            LatencyLog log = new LatencyLog();
+            logs.add(log);
+            pool.execute(() -> {
+                while (System.nanoTime() < end) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(requests.get(), HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    log.add((System.nanoTime() - start) / 1000);
+                }
+            });
+        }
+        long started = System.nanoTime();
+        pool.shutdown();
+        pool.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        logs.forEach(log -> latencies.add(log.values()));
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(name, all.length, errors.get(), seconds,
+                percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999));
+    }
+
+    static HttpRequest get(URI base, String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).GET().build();
+    }
+
+    static <T> T any(List<T> values) {
+        return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    // Written by a single client thread, read once it is done
+    private static class LatencyLog {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] values() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Requests show up in the Prometheus endpoint tagged by endpoint and filters, with their statements.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+class MetricsTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void requestsAreMeasured() throws Exception {
+        mockMvc.perform(get("/gitminer/issues?state=opened&author=nobody&size=5"))
+                .andExpect(status().isOk());
+
+        String tags = "filters=\"author,state\",handler=\"IssueController.findAll\"";
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{exception=\"None\"," + tags)))
+                .andExpect(content().string(containsString("gitminer_request_statements_count{" + tags)))
+                .andExpect(content().string(containsString("gitminer_request_rows_count{" + tags)))
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_count")))
+                .andExpect(content().string(containsString("hibernate_statements_total")))
+                .andExpect(content().string(containsString("hikaricp_connections_active")));
+    }
+}
@@ -0,0 +1,111 @@
+package aiss.gitminer.gitminer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The JSON export is the project document of GET /projects/{id}, and the NDJSON export loads back
+ * through POST /projects/bulk into the same project.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ProjectExportTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeAll
+    void createProject() throws Exception {
+        StringJoiner commits = new StringJoiner(",");
+        for (int i = 0; i < 3; i++) {
+            commits.add("{\"id\":\"exported-commit-" + i + "\",\"title\":\"title " + i + "\",\"message\":\"message\"," +
+                    "\"author_name\":\"ann\",\"author_email\":\"ann@example.com\",\"web_url\":\"url\"," +
+                    "\"authored_date\":\"2023-01-0" + (i + 1) + "T10:00:00Z\"}");
+        }
+        StringJoiner issues = new StringJoiner(",");
+        for (int i = 0; i < 3; i++) {
+            StringJoiner comments = new StringJoiner(",");
+            for (int c = 0; c < i; c++) {
+                comments.add("{\"id\":\"exported-comment-" + i + "-" + c + "\",\"body\":\"comment " + c + "\"," +
+                        "\"created_at\":\"2023-02-01T00:00:0" + c + "Z\",\"author\":{\"username\":\"export-bob\",\"name\":\"Bob\"}}");
+            }
+            issues.add("{\"id\":\"exported-issue-" + i + "\",\"title\":\"issue " + i + "\",\"description\":\"description\"," +
+                    "\"state\":\"" + (i == 0 ? "closed" : "opened") + "\",\"created_at\":\"2023-01-01T00:00:00Z\"," +
+                    (i == 0 ? "\"closed_at\":\"2023-01-05T00:00:00Z\"," : "") +
+                    "\"labels\":[\"bug\",\"label-" + i + "\"],\"votes\":" + i + ",\"author\":{\"username\":\"export-ann\"," +
+                    "\"name\":\"Ann\"},\"assignee\":{\"username\":\"export-bob\"},\"comments\":[" + comments + "]}");
+        }
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"exported\",\"name\":\"exported\",\"web_url\":\"https://example.com/exported\"," +
+                        "\"commits\":[" + commits + "],\"issues\":[" + issues + "]}"))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void jsonExportIsTheProjectDocument() throws Exception {
+        JsonNode exported = objectMapper.readTree(export("exported", "json"));
+        JsonNode project = objectMapper.readTree(mockMvc.perform(get("/gitminer/projects/exported"))
+                .andReturn().getResponse().getContentAsString());
+
+        assertEquals(3, exported.get("commits").size());
+        assertEquals(2, exported.get("issues").get(2).get("comments").size());
+        assertEquals(project, exported);
+    }
+
+    @Test
+    void ndjsonExportLoadsBack() throws Exception {
+        String exported = export("exported", "ndjson");
+        assertEquals(1 + 3 + 3 + 3, exported.lines().count());
+
+        // Under other ids, as the bulk endpoint refuses stored ones
+        String copy = exported.replace("exported", "reloaded");
+        mockMvc.perform(post("/gitminer/projects/bulk").contentType("application/x-ndjson").content(copy))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.commits").value(3))
+                .andExpect(jsonPath("$.issues").value(3))
+                .andExpect(jsonPath("$.comments").value(3));
+
+        assertEquals(lines(copy), lines(export("reloaded", "ndjson")));
+    }
+
+    private String export(String id, String format) throws Exception {
+        MvcResult started = mockMvc.perform(get("/gitminer/projects/" + id + "/export?format=" + format))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private List<JsonNode> lines(String ndjson) throws Exception {
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : ndjson.split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,72 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The commits and issues of one project are paged by cursor, without those of other projects.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProjectListingTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void childrenArePagedWithinTheProject() throws Exception {
+        for (String project : new String[]{"listed", "unlisted"}) {
+            mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                            "{\"id\":\"" + project + "\",\"name\":\"" + project + "\",\"web_url\":\"https://example.com\"," +
+                            "\"commits\":[" + commit(project + "-commit-1", "ann", "2023-01-01T00:00:00Z") + "," +
+                            commit(project + "-commit-2", "bob", "2023-01-03T00:00:00Z") + "," +
+                            commit(project + "-commit-3", "ann", "2023-01-02T00:00:00Z") + "]," +
+                            "\"issues\":[" + issue(project + "-issue-1", "opened") + "," +
+                            issue(project + "-issue-2", "closed") + "]}"))
+                    .andExpect(status().isCreated());
+        }
+
+        String cursor = mockMvc.perform(get("/gitminer/projects/listed/commits?size=2&order=-authoredDate"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value("listed-commit-2"))
+                .andExpect(jsonPath("$[1].id").value("listed-commit-3"))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+        String last = mockMvc.perform(get("/gitminer/projects/listed/commits?size=2&order=-authoredDate&after=" + cursor))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value("listed-commit-1"))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+        assertNull(last);
+
+        mockMvc.perform(get("/gitminer/projects/listed/commits?authorName=ann&size=10"))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value("listed-commit-1"));
+        mockMvc.perform(get("/gitminer/projects/listed/issues?state=closed"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value("listed-issue-2"));
+        mockMvc.perform(get("/gitminer/projects/missing/commits"))
+                .andExpect(status().isNotFound());
+    }
+
+    private static String commit(String id, String author, String date) {
+        return "{\"id\":\"" + id + "\",\"title\":\"title\",\"author_name\":\"" + author + "\",\"web_url\":\"url\"," +
+                "\"authored_date\":\"" + date + "\"}";
+    }
+
+    private static String issue(String id, String state) {
+        return "{\"id\":\"" + id + "\",\"title\":\"issue\",\"state\":\"" + state + "\"," +
+                "\"created_at\":\"2023-01-01T00:00:00Z\",\"comments\":[]}";
+    }
+}
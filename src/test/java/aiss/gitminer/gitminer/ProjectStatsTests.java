@@ -0,0 +1,110 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.dto.ProjectStatsDto;
+import aiss.gitminer.service.ActivityRollups;
+import aiss.gitminer.service.ProjectStatistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.reset;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Statistics are aggregated per author, state and week, and recomputed after the project is written.
+ * A computation whose project was evicted meanwhile is not cached.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProjectStatsTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ProjectStatistics projectStatistics;
+
+    @Autowired
+    CacheManager hibernateCacheManager;
+
+    @SpyBean
+    ActivityRollups activityRollups;
+
+    @Test
+    void statsFollowIngestion() throws Exception {
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"counted\",\"name\":\"counted\",\"web_url\":\"https://example.com\",\"commits\":[" +
+                        commit("counted-commit-1", "ann", "2023-01-02T10:00:00Z") + "," +
+                        commit("counted-commit-2", "ann", "2023-01-08T10:00:00Z") + "," +
+                        commit("counted-commit-3", "bob", "2023-01-09T10:00:00Z") + "]," +
+                        "\"issues\":[{\"id\":\"counted-issue-1\",\"title\":\"issue\",\"state\":\"closed\",\"votes\":4," +
+                        "\"created_at\":\"2023-01-02T00:00:00Z\",\"closed_at\":\"2023-01-04T00:00:00Z\",\"comments\":[" +
+                        "{\"id\":\"counted-comment-1\",\"body\":\"done\",\"created_at\":\"2023-01-03T00:00:00Z\"," +
+                        "\"author\":{\"username\":\"zed\"}}]}]}"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/gitminer/projects/counted/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.commits").value(3))
+                .andExpect(jsonPath("$.mean_hours_to_close").value(48.0))
+                .andExpect(jsonPath("$.commits_per_author[0].author").value("ann"))
+                .andExpect(jsonPath("$.commits_per_author[0].count").value(2))
+                .andExpect(jsonPath("$.comments_per_author[0].author").value("zed"))
+                .andExpect(jsonPath("$.issues_per_state[0].votes").value(4))
+                .andExpect(jsonPath("$.weekly_activity.length()").value(2))
+                .andExpect(jsonPath("$.weekly_activity[0].week").value("2023-01-02"))
+                .andExpect(jsonPath("$.weekly_activity[0].commits").value(2))
+                .andExpect(jsonPath("$.weekly_activity[0].issues_closed").value(1))
+                .andExpect(jsonPath("$.weekly_activity[1].commits").value(1));
+
+        mockMvc.perform(patch("/gitminer/projects/counted/sync").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"commits\":[" + commit("counted-commit-4", "bob", "2023-01-10T10:00:00Z") + "]}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/gitminer/projects/counted/stats"))
+                .andExpect(jsonPath("$.commits").value(4))
+                .andExpect(jsonPath("$.weekly_activity[1].commits").value(2));
+    }
+
+    @Test
+    void statsEvictedWhileComputedAreNotCached() throws Exception {
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"raced\",\"name\":\"raced\",\"web_url\":\"https://example.com\",\"commits\":[" +
+                        commit("raced-commit-1", "ann", "2023-01-02T10:00:00Z") + "]}"))
+                .andExpect(status().isCreated());
+        Cache<Object, Object> cache = hibernateCacheManager.getCache(ProjectStatistics.CACHE);
+
+        // A write commits and evicts the project halfway through the computation
+        doAnswer(invocation -> {
+            cache.remove("raced");
+            return invocation.callRealMethod();
+        }).when(activityRollups).activity(eq("raced"), any(), any(), any(), anyBoolean());
+        projectStatistics.project("raced");
+        assertNull(cache.get("raced"));
+
+        reset(activityRollups);
+        projectStatistics.project("raced");
+        assertInstanceOf(ProjectStatsDto.class, cache.get("raced"));
+    }
+
+    private static String commit(String id, String author, String date) {
+        return "{\"id\":\"" + id + "\",\"title\":\"title\",\"author_name\":\"" + author + "\",\"web_url\":\"url\"," +
+                "\"authored_date\":\"" + date + "\"}";
+    }
+}
@@ -0,0 +1,188 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * A sync delta only touches what changed, and sending it again changes nothing. Attaching or moving
+ * a child is a change.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProjectSyncTests {
+
+    private static final String PROJECT = "{\"id\":\"synced\",\"name\":\"synced\",\"web_url\":\"https://example.com\"," +
+            "\"commits\":[" + commit("sync-commit-1", "first") + "," + commit("sync-commit-2", "second") + "]," +
+            "\"issues\":[{\"id\":\"sync-issue-1\",\"title\":\"issue\",\"state\":\"opened\"," +
+            "\"created_at\":\"2023-01-01T00:00:00Z\",\"updated_at\":\"2023-01-01T00:00:00Z\",\"comments\":[]}]}";
+
+    private static final String DELTA = "{\"commits\":[" + commit("sync-commit-1", "first") + "," +
+            commit("sync-commit-3", "third") + "]," +
+            "\"issues\":[{\"id\":\"sync-issue-1\",\"title\":\"issue\",\"state\":\"closed\"," +
+            "\"created_at\":\"2023-01-01T00:00:00Z\",\"updated_at\":\"2023-02-01T00:00:00Z\",\"comments\":[" +
+            "{\"id\":\"sync-comment-1\",\"body\":\"closing\",\"created_at\":\"2023-02-01T00:00:00Z\"}]}]," +
+            "\"removed_commits\":[\"sync-commit-2\"]}";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void syncAppliesOnlyTheDelta() throws Exception {
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(PROJECT))
+                .andExpect(status().isCreated());
+        String etag = etag();
+
+        mockMvc.perform(patch("/gitminer/projects/synced/sync").contentType(MediaType.APPLICATION_JSON).content(DELTA))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.watermark").value("2023-02-01T00:00:00Z"))
+                .andExpect(jsonPath("$.commits.added").value(1))
+                .andExpect(jsonPath("$.commits.unchanged").value(1))
+                .andExpect(jsonPath("$.commits.removed").value(1))
+                .andExpect(jsonPath("$.issues.updated").value(1))
+                .andExpect(jsonPath("$.comments.added").value(1));
+        mockMvc.perform(get("/gitminer/projects/synced"))
+                .andExpect(jsonPath("$.commits.length()").value(2))
+                .andExpect(jsonPath("$.issues[0].state").value("closed"))
+                .andExpect(jsonPath("$.issues[0].comments[0].body").value("closing"));
+        String synced = etag();
+        assertNotEquals(etag, synced);
+
+        mockMvc.perform(patch("/gitminer/projects/synced/sync").contentType(MediaType.APPLICATION_JSON).content(DELTA))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.commits.unchanged").value(2))
+                .andExpect(jsonPath("$.issues.unchanged").value(1))
+                .andExpect(jsonPath("$.comments.unchanged").value(1));
+        assertEquals(synced, etag());
+    }
+
+    // Both comments are at version 0, so only the version of the issue tells the two lists apart
+    @Test
+    void replacingACommentChangesTheIssueETag() throws Exception {
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"resynced\",\"name\":\"resynced\",\"web_url\":\"https://example.com\",\"commits\":[]," +
+                        "\"issues\":[" + issue("resync-issue", comment("resync-comment-1")) + "]}"))
+                .andExpect(status().isCreated());
+        String etag = mockMvc.perform(get("/gitminer/issues/resync-issue/comments"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(patch("/gitminer/projects/resynced/sync").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"issues\":[" + issue("resync-issue", comment("resync-comment-2")) + "]," +
+                        "\"removed_comments\":[\"resync-comment-1\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.comments.added").value(1))
+                .andExpect(jsonPath("$.comments.removed").value(1));
+        mockMvc.perform(get("/gitminer/issues/resync-issue/comments").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value("resync-comment-2"));
+    }
+
+    @Test
+    void childrenOfAnotherProjectAreRejected() throws Exception {
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"owner\",\"name\":\"owner\",\"web_url\":\"https://example.com\"," +
+                        "\"commits\":[" + commit("owned-commit", "owned") + "]," +
+                        "\"issues\":[" + issue("owned-issue", comment("owned-comment")) + "]}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"other\",\"name\":\"other\",\"web_url\":\"https://example.com\"," +
+                        "\"commits\":[],\"issues\":[" + issue("other-issue", "") + "]}"))
+                .andExpect(status().isCreated());
+        String etag = mockMvc.perform(get("/gitminer/projects/owner")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        for (String delta : new String[]{
+                "{\"commits\":[" + commit("owned-commit", "taken") + "]}",
+                "{\"issues\":[" + issue("owned-issue", "") + "]}",
+                "{\"issues\":[" + issue("other-issue", comment("owned-comment")) + "]}"}) {
+            mockMvc.perform(patch("/gitminer/projects/other/sync").contentType(MediaType.APPLICATION_JSON).content(delta))
+                    .andExpect(status().isBadRequest());
+        }
+        mockMvc.perform(get("/gitminer/projects/owner").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/gitminer/projects/other"))
+                .andExpect(jsonPath("$.commits.length()").value(0))
+                .andExpect(jsonPath("$.issues[0].comments.length()").value(0));
+    }
+
+    @Test
+    void attachingAndMovingChildrenAreUpdates() throws Exception {
+        mockMvc.perform(post("/gitminer/commits").contentType(MediaType.APPLICATION_JSON)
+                        .content(commit("orphan-commit", "orphan")))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/gitminer/issues").contentType(MediaType.APPLICATION_JSON)
+                        .content(issue("orphan-issue", comment("orphan-comment"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"adopter\",\"name\":\"adopter\",\"web_url\":\"https://example.com\",\"commits\":[]," +
+                        "\"issues\":[" + issue("adopter-issue", comment("adopted-comment")) + "]}"))
+                .andExpect(status().isCreated());
+        String etag = mockMvc.perform(get("/gitminer/projects/adopter")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(patch("/gitminer/projects/adopter/sync").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"commits\":[" + commit("orphan-commit", "orphan") + "],\"issues\":[" +
+                        issue("orphan-issue", comment("orphan-comment") + "," + comment("adopted-comment")) + "]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.commits.updated").value(1))
+                .andExpect(jsonPath("$.issues.updated").value(1))
+                .andExpect(jsonPath("$.comments.updated").value(1))
+                .andExpect(jsonPath("$.comments.unchanged").value(1));
+        mockMvc.perform(get("/gitminer/projects/adopter").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.commits.length()").value(1))
+                .andExpect(jsonPath("$.issues.length()").value(2));
+        mockMvc.perform(get("/gitminer/issues/orphan-issue/comments"))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    // Unlike POST /comments, a delta is matched by id only, so a twin under a new id is kept
+    @Test
+    void aNewCommentWithStoredContentIsAdded() throws Exception {
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"twins\",\"name\":\"twins\",\"web_url\":\"https://example.com\",\"commits\":[]," +
+                        "\"issues\":[" + issue("twin-issue", twin("twin-comment-1")) + "]}"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(patch("/gitminer/projects/twins/sync").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"issues\":[" + issue("twin-issue", twin("twin-comment-1") + "," + twin("twin-comment-2")) + "]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.comments.added").value(1))
+                .andExpect(jsonPath("$.comments.unchanged").value(1));
+        mockMvc.perform(get("/gitminer/issues/twin-issue/comments"))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    private String etag() throws Exception {
+        return mockMvc.perform(get("/gitminer/projects/synced")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private static String issue(String id, String comment) {
+        return "{\"id\":\"" + id + "\",\"title\":\"issue\",\"state\":\"opened\"," +
+                "\"created_at\":\"2023-01-01T00:00:00Z\",\"updated_at\":\"2023-01-01T00:00:00Z\",\"comments\":[" + comment + "]}";
+    }
+
+    private static String comment(String id) {
+        return "{\"id\":\"" + id + "\",\"body\":\"body of " + id + "\",\"created_at\":\"2023-01-01T00:00:00Z\"}";
+    }
+
+    private static String twin(String id) {
+        return "{\"id\":\"" + id + "\",\"body\":\"+1\",\"created_at\":\"2023-01-01T00:00:00Z\"}";
+    }
+
+    private static String commit(String id, String title) {
+        return "{\"id\":\"" + id + "\",\"title\":\"" + title + "\",\"author_name\":\"author\",\"web_url\":\"url\"," +
+                "\"authored_date\":\"2023-01-01T00:00:00Z\"}";
+    }
+}
@@ -0,0 +1,187 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.repository.ProjectRepository;
+import aiss.gitminer.service.KeysetPager;
+import aiss.gitminer.service.SearchIndex;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Repeated reads are served from the second-level and query caches, and writes are seen right away.
+ * The statements of cached reads do not grow with the data, before or after an eviction, and a
+ * write to a project leaves the children of other projects cached. Only first pages of lists are cached.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ReadCacheTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ProjectRepository projectRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    SearchIndex searchIndex;
+
+    @Autowired
+    KeysetPager keysetPager;
+
+    @Test
+    void projectDetailIsCachedUntilUpdated() throws Exception {
+        List<Commit> commits = new ArrayList<>();
+        Commit commit = new Commit("title", "message", "author", "author@example.com",
+                Instant.parse("2023-01-01T00:00:00Z"), "url");
+        commit.setId("cached-commit");
+        commits.add(commit);
+        projectRepository.save(new Project("cached", "cached", "https://example.com/cached", commits, new ArrayList<>()));
+
+        mockMvc.perform(get("/gitminer/projects/cached")).andExpect(status().isOk());
+        // Index updates run in the background and their statements would be counted too
+        searchIndex.rebuild();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/gitminer/projects/cached"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.commits.length()").value(1));
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        mockMvc.perform(put("/gitminer/projects/cached")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"cached\",\"name\":\"renamed\",\"web_url\":\"https://example.com\",\"commits\":[],\"issues\":[]}"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/gitminer/projects/cached"))
+                .andExpect(jsonPath("$.name").value("renamed"))
+                .andExpect(jsonPath("$.commits.length()").value(0));
+    }
+
+    @Test
+    void cachedReadsStayBounded() throws Exception {
+        for (String name : List.of("warm-small", "warm-large")) {
+            int issues = name.equals("warm-small") ? 2 : 30;
+            StringJoiner issueJson = new StringJoiner(",");
+            for (int i = 0; i < issues; i++) {
+                StringJoiner comments = new StringJoiner(",");
+                for (int c = 0; c < (name.equals("warm-small") ? 1 : 10); c++) {
+                    comments.add("{\"id\":\"" + name + "-comment-" + i + "-" + c + "\",\"body\":\"body " + i + " " + c +
+                            "\",\"created_at\":\"2023-01-01T00:00:00Z\",\"author\":{\"username\":\"" + name + "-user-" + (c % 4) + "\"}}");
+                }
+                issueJson.add("{\"id\":\"" + name + "-issue-" + i + "\",\"title\":\"issue\",\"state\":\"" + name +
+                        "\",\"created_at\":\"2023-01-01T00:00:00Z\",\"labels\":[\"bug\"],\"author\":{\"username\":\"" + name +
+                        "-user-0\"},\"comments\":[" + comments + "]}");
+            }
+            mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                            "{\"id\":\"" + name + "\",\"name\":\"" + name + "\",\"web_url\":\"https://example.com\"," +
+                            "\"commits\":[],\"issues\":[" + issueJson + "]}"))
+                    .andExpect(status().isCreated());
+        }
+        searchIndex.rebuild();
+
+        // Warm: everything but the version query of the issue detail comes from the caches
+        for (String url : List.of("/gitminer/projects/%s", "/gitminer/projects/%s?expand=issues",
+                "/gitminer/issues/%s-issue-0/comments?size=50", "/gitminer/issues?state=%s&size=50",
+                "/gitminer/issues?state=%s&size=50&expand=comments", "/gitminer/projects?name=%s&expand=commits,issues,comments")) {
+            assertCached(url, 0);
+        }
+        assertCached("/gitminer/issues/%s-issue-0", 1);
+
+        // Editing a comment evicts its issue together with the query results, so the next read runs
+        // the queries again instead of loading the evicted rows one by one
+        for (String name : List.of("warm-small", "warm-large")) {
+            mockMvc.perform(post("/gitminer/comments").contentType(MediaType.APPLICATION_JSON).content(
+                            "{\"id\":\"" + name + "-comment-0-0\",\"body\":\"edited\",\"created_at\":\"2023-01-01T00:00:00Z\"}"))
+                    .andExpect(status().isOk());
+        }
+        assertEquals(statements("/gitminer/issues?state=warm-small&size=50&expand=comments"),
+                statements("/gitminer/issues?state=warm-large&size=50&expand=comments"));
+        assertEquals(statements("/gitminer/issues/warm-small-issue-0"), statements("/gitminer/issues/warm-large-issue-0"));
+        mockMvc.perform(get("/gitminer/issues/warm-large-issue-0/comments?size=50"))
+                .andExpect(jsonPath("$[0].body").value("edited"));
+    }
+
+    @Test
+    void writingAProjectOnlyEvictsItsOwnChildren() throws Exception {
+        for (String name : List.of("evicted", "kept")) {
+            mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                            "{\"id\":\"" + name + "\",\"name\":\"" + name + "\",\"web_url\":\"https://example.com\"," +
+                            "\"commits\":[{\"id\":\"" + name + "-commit\",\"title\":\"title\",\"author_name\":\"author\"," +
+                            "\"web_url\":\"url\",\"authored_date\":\"2023-01-01T00:00:00Z\"}],\"issues\":[]}"))
+                    .andExpect(status().isCreated());
+        }
+        searchIndex.rebuild();
+        statements("/gitminer/commits/evicted-commit");
+        statements("/gitminer/commits/kept-commit");
+
+        mockMvc.perform(put("/gitminer/projects/evicted").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"name\":\"evicted\",\"web_url\":\"https://example.com\",\"commits\":[],\"issues\":[]}"))
+                .andExpect(status().isNoContent());
+        searchIndex.rebuild();
+        assertEquals(0, statements("/gitminer/commits/kept-commit"));
+        assertEquals(1, statements("/gitminer/commits/evicted-commit"));
+    }
+
+    @Test
+    void onlyFirstPagesAreCached() throws Exception {
+        StringJoiner issues = new StringJoiner(",");
+        for (int i = 0; i < 3; i++) {
+            issues.add("{\"id\":\"deep-issue-" + i + "\",\"title\":\"issue\",\"state\":\"deep\"," +
+                    "\"created_at\":\"2023-01-01T00:00:00Z\"}");
+        }
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"deep\",\"name\":\"deep\",\"web_url\":\"https://example.com\",\"commits\":[]," +
+                        "\"issues\":[" + issues + "]}"))
+                .andExpect(status().isCreated());
+        String cursor = keysetPager.nextCursor(keysetPager.findAll(Issue.class, null, null, "", 1), null);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        keysetPager.findAll(Issue.class, null, null, cursor, 1);
+        keysetPager.findAll(Issue.class, null, PageRequest.of(1, 1));
+        assertEquals(0, statistics.getQueryCachePutCount());
+        keysetPager.findAll(Issue.class, null, null, null, 2);
+        keysetPager.findAll(Issue.class, null, PageRequest.of(0, 2));
+        assertEquals(2, statistics.getQueryCachePutCount());
+    }
+
+    // Reads the resource of both projects twice and checks the second read costs the given statements
+    private void assertCached(String url, long expected) throws Exception {
+        for (String name : List.of("warm-small", "warm-large")) {
+            String resource = String.format(url, name);
+            statements(resource);
+            assertEquals(expected, statements(resource), resource);
+        }
+    }
+
+    private long statements(String url) throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+}
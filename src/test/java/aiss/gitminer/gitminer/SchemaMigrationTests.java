@@ -0,0 +1,66 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.metamodel.EntityType;
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The migrations must build the schema the entities expect, indexes included, since the prod
+ * profile never lets Hibernate touch it.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migrated",
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+class SchemaMigrationTests {
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void migrationsCreateEveryDeclaredIndex() {
+        Set<String> declared = new HashSet<>();
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            Class<?> type = entity.getJavaType();
+            if (type.isAnnotationPresent(Table.class)) {
+                addIndexes(declared, type.getAnnotation(Table.class).indexes());
+            }
+            for (Field field : type.getDeclaredFields()) {
+                if (field.isAnnotationPresent(CollectionTable.class)) {
+                    addIndexes(declared, field.getAnnotation(CollectionTable.class).indexes());
+                }
+            }
+        }
+
+        Set<String> migrated = new HashSet<>(jdbcTemplate.queryForList(
+                "select lower(index_name) from information_schema.indexes", String.class));
+        migrated.addAll(jdbcTemplate.queryForList(
+                "select lower(constraint_name) from information_schema.table_constraints", String.class));
+
+        for (String index : declared) {
+            assertTrue(migrated.contains(index), index + " is not created by the migrations");
+        }
+    }
+
+    private static void addIndexes(Set<String> names, Index[] indexes) {
+        for (Index index : indexes) {
+            names.add(index.name().toLowerCase());
+        }
+    }
+}
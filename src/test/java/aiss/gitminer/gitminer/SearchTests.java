@@ -0,0 +1,120 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Ingested text becomes searchable shortly after, and the filters narrow the hits. Children moved
+ * to another project by a PUT, or attached to one by a sync, are found under their new project.
+ * Pages out of range are rejected.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class SearchTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void ingestedTextIsSearchable() throws Exception {
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"searched\",\"name\":\"searched\",\"web_url\":\"https://example.com\"," +
+                        "\"commits\":[{\"id\":\"search-commit\",\"title\":\"Fix the flux capacitor\",\"message\":\"it leaked\"," +
+                        "\"author_name\":\"emmett\",\"web_url\":\"url\",\"authored_date\":\"2023-01-01T00:00:00Z\"}]," +
+                        "\"issues\":[{\"id\":\"search-issue\",\"title\":\"Capacitor overheats\",\"state\":\"opened\"," +
+                        "\"description\":\"the flux capacitor needs 1.21 gigawatts\",\"created_at\":\"2023-02-01T00:00:00Z\"," +
+                        "\"comments\":[{\"id\":\"search-comment\",\"body\":\"great scott, the flux\"," +
+                        "\"created_at\":\"2023-03-01T00:00:00Z\",\"author\":{\"username\":\"marty\"}}]}]}"))
+                .andExpect(status().isCreated());
+
+        for (int i = 0; i < 100 && !mockMvc.perform(get("/gitminer/search?q=flux")).andReturn().getResponse()
+                .getContentAsString().contains("\"total\":3"); i++) {
+            Thread.sleep(50);
+        }
+        mockMvc.perform(get("/gitminer/search?q=flux capacitor"))
+                .andExpect(jsonPath("$.total").value(3));
+        mockMvc.perform(get("/gitminer/search?q=leaked"))
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.hits[0].id").value("search-commit"))
+                .andExpect(jsonPath("$.hits[0].project_id").value("searched"));
+        mockMvc.perform(get("/gitminer/search?q=flux&type=comment&author=marty"))
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.hits[0].id").value("search-comment"));
+        mockMvc.perform(get("/gitminer/search?q=flux&state=opened"))
+                .andExpect(jsonPath("$.hits[0].id").value("search-issue"));
+        mockMvc.perform(get("/gitminer/search?q=flux&since=2023-01-15T00:00:00Z&until=2023-02-15T00:00:00Z"))
+                .andExpect(jsonPath("$.total").value(1));
+        mockMvc.perform(get("/gitminer/search?q=flux&project=elsewhere"))
+                .andExpect(jsonPath("$.total").value(0));
+    }
+
+    @Test
+    void childrenMovedByAPutAreReindexed() throws Exception {
+        String children = "\"commits\":[{\"id\":\"moved-commit\",\"title\":\"Rewire the time circuits\"," +
+                "\"author_name\":\"emmett\",\"web_url\":\"url\",\"authored_date\":\"2023-01-01T00:00:00Z\"}]," +
+                "\"issues\":[{\"id\":\"moved-issue\",\"title\":\"Time circuits flicker\",\"state\":\"opened\"," +
+                "\"created_at\":\"2023-02-01T00:00:00Z\",\"comments\":[{\"id\":\"moved-comment\"," +
+                "\"body\":\"the time circuits again\",\"created_at\":\"2023-03-01T00:00:00Z\"}]}]";
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"moved-from\",\"name\":\"moved-from\",\"web_url\":\"https://example.com\"," + children + "}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"moved-to\",\"name\":\"moved-to\",\"web_url\":\"https://example.com\"}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(put("/gitminer/projects/moved-to").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"name\":\"moved-to\",\"web_url\":\"https://example.com\"," + children + "}"))
+                .andExpect(status().isNoContent());
+
+        for (int i = 0; i < 100 && !mockMvc.perform(get("/gitminer/search?q=circuits&project=moved-to")).andReturn()
+                .getResponse().getContentAsString().contains("\"total\":3"); i++) {
+            Thread.sleep(50);
+        }
+        mockMvc.perform(get("/gitminer/search?q=circuits&project=moved-to"))
+                .andExpect(jsonPath("$.total").value(3));
+        mockMvc.perform(get("/gitminer/search?q=circuits&project=moved-from"))
+                .andExpect(jsonPath("$.total").value(0));
+    }
+
+    @Test
+    void invalidPagesAreRejected() throws Exception {
+        for (String paging : new String[]{"page=-1", "size=0", "size=-5", "page=2147483647&size=10"}) {
+            mockMvc.perform(get("/gitminer/search?q=flux&" + paging))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Test
+    void commentsOfIssuesAttachedByASyncAreReindexed() throws Exception {
+        String issue = "{\"id\":\"attached-issue\",\"title\":\"Hoverboard\",\"state\":\"opened\"," +
+                "\"created_at\":\"2023-02-01T00:00:00Z\",\"updated_at\":\"2023-02-01T00:00:00Z\"," +
+                "\"comments\":[{\"id\":\"attached-comment\",\"body\":\"the hoverboard does not work on water\"," +
+                "\"created_at\":\"2023-03-01T00:00:00Z\"}]}";
+        mockMvc.perform(post("/gitminer/issues").contentType(MediaType.APPLICATION_JSON).content(issue))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"attached-to\",\"name\":\"attached-to\",\"web_url\":\"https://example.com\"}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(patch("/gitminer/projects/attached-to/sync").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"issues\":[" + issue + "]}"))
+                .andExpect(status().isOk());
+
+        for (int i = 0; i < 100 && !mockMvc.perform(get("/gitminer/search?q=hoverboard&project=attached-to")).andReturn()
+                .getResponse().getContentAsString().contains("\"total\":2"); i++) {
+            Thread.sleep(50);
+        }
+        mockMvc.perform(get("/gitminer/search?q=water&project=attached-to"))
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.hits[0].id").value("attached-comment"));
+    }
+}
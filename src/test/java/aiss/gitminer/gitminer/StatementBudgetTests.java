@@ -0,0 +1,51 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.servlet.ServletException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * A read over its statement budget fails, and the message shows the statements it ran.
+ */
+@SpringBootTest(properties = {
+        "gitminer.sql.budget.statements=1",
+        "gitminer.sql.fail-over-budget=true"
+})
+@AutoConfigureMockMvc
+class StatementBudgetTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void readsOverBudgetFail() throws Exception {
+        // Writes are not checked without a budget of their own
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"budgeted\",\"name\":\"budgeted\",\"web_url\":\"https://example.com\",\"commits\":[]," +
+                        "\"issues\":[{\"id\":\"budgeted-issue\",\"title\":\"issue\",\"state\":\"opened\"," +
+                        "\"created_at\":\"2023-01-01T00:00:00Z\",\"comments\":[]}]}"))
+                .andExpect(status().isCreated());
+
+        ServletException failure = assertThrows(ServletException.class,
+                () -> mockMvc.perform(get("/gitminer/projects/budgeted/stats")));
+        assertThat(failure.getMessage(), containsString("GET /gitminer/projects/{id}/stats ran"));
+        assertThat(failure.getMessage(), containsString("over its budget of 1 statements"));
+        assertThat(failure.getMessage(), containsString("1 x select ... from "));
+
+        // Its own budget applies instead of the default one
+        mockMvc.perform(get("/gitminer/issues/budgeted-issue/comments"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,164 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.model.User;
+import aiss.gitminer.repository.ProjectRepository;
+import aiss.gitminer.repository.UserRepository;
+import aiss.gitminer.service.SearchIndex;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The read endpoints must issue a fixed number of statements, whatever the size of the data returned.
+ * Caches are turned off so that every request reaches the database.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class StatementCountTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ProjectRepository projectRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    SearchIndex searchIndex;
+
+    @BeforeAll
+    void createProjects() throws Exception {
+        createProject("small", 2, 1, 1);
+        createProject("large", 40, 25, 6);
+        // Runs after the queued index updates, whose statements would otherwise be counted
+        searchIndex.rebuild();
+    }
+
+    @Test
+    void projectDetail() throws Exception {
+        assertBounded("/gitminer/projects/%s", 6);
+        assertBounded("/gitminer/projects/%s?expand=issues", 4);
+        assertBounded("/gitminer/projects/%s?expand=none", 2);
+    }
+
+    @Test
+    void issueDetail() throws Exception {
+        assertBounded("/gitminer/issues/%s-issue-0", 4);
+        assertBounded("/gitminer/issues/%s-issue-0?expand=none", 3);
+    }
+
+    @Test
+    void issueComments() throws Exception {
+        assertBounded("/gitminer/issues/%s-issue-0/comments?size=50", 2);
+    }
+
+    // Answering a matching If-None-Match only reads the version columns
+    @Test
+    void notModified() throws Exception {
+        for (String url : List.of("/gitminer/projects/%s", "/gitminer/issues/%s-issue-0",
+                "/gitminer/issues/%s-issue-0/comments", "/gitminer/comments/%s-comment-0-0")) {
+            for (String project : List.of("small", "large")) {
+                String resource = String.format(url, project);
+                String etag = mockMvc.perform(get(resource)).andExpect(status().isOk())
+                        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+                Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+                statistics.clear();
+                mockMvc.perform(get(resource).header(HttpHeaders.IF_NONE_MATCH, etag))
+                        .andExpect(status().isNotModified())
+                        .andExpect(content().string(""));
+                assertEquals(1, statistics.getPrepareStatementCount(), resource);
+            }
+        }
+    }
+
+    @Test
+    void lists() throws Exception {
+        assertBounded("/gitminer/issues?state=%s&size=50", 3);
+        assertBounded("/gitminer/issues?state=%s&size=50&after=", 3);
+        assertBounded("/gitminer/issues?state=%s&size=50&expand=comments", 4);
+        assertBounded("/gitminer/projects?name=%s", 4);
+        assertBounded("/gitminer/projects?name=%s&expand=commits,issues,comments", 8);
+        assertBounded("/gitminer/commits?authorName=%s&size=50", 1);
+        assertBounded("/gitminer/commits?authorName=%s&size=50&since=2022-01-01T00:00:00Z&until=2024-01-01T00:00:00Z", 1);
+    }
+
+    // Runs the request against both projects and checks they cost the same, known number of statements
+    private void assertBounded(String url, long expected) throws Exception {
+        assertEquals(expected, statements(String.format(url, "small")), url + " on the small project");
+        assertEquals(expected, statements(String.format(url, "large")), url + " on the large project");
+    }
+
+    private long statements(String url) throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+        long count = statistics.getPrepareStatementCount();
+        assertTrue(count > 0, url);
+        return count;
+    }
+
+    private void createProject(String name, int issues, int commentsPerIssue, int authors) throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < authors; i++) {
+            users.add(new User(name + "-user-" + i, "User " + i, null, null));
+        }
+        Map<String, User> stored = userRepository.upsertAll(users);
+
+        List<Commit> commits = new ArrayList<>();
+        for (int i = 0; i < issues; i++) {
+            Commit commit = new Commit("title", "message", name, "author@example.com", Instant.parse("2023-01-01T00:00:00Z"), "url");
+            commit.setId(name + "-commit-" + i);
+            commits.add(commit);
+        }
+
+        List<Issue> projectIssues = new ArrayList<>();
+        for (int i = 0; i < issues; i++) {
+            List<Comment> comments = new ArrayList<>();
+            for (int j = 0; j < commentsPerIssue; j++) {
+                comments.add(new Comment(name + "-comment-" + i + "-" + j, "body " + i + " " + j,
+                        stored.get(name + "-user-" + (j % authors)), Instant.parse("2023-01-01T00:00:00Z").plusSeconds(j), null));
+            }
+            Issue issue = new Issue("issue " + i, "description", name, Instant.parse("2023-01-01T00:00:00Z"), null, null,
+                    List.of("bug", "label-" + i), stored.get(name + "-user-" + (i % authors)),
+                    stored.get(name + "-user-0"), i, comments);
+            issue.setId(name + "-issue-" + i);
+            projectIssues.add(issue);
+        }
+
+        projectRepository.save(new Project(name, name, "https://example.com/" + name, commits, projectIssues));
+    }
+}
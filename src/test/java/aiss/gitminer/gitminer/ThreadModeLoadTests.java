@@ -0,0 +1,105 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.GitMinerApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput and latency of the read endpoints with requests on the Tomcat pool and on virtual
+ * threads, under more concurrent clients than the pool has threads.
+ *
+ * Only run on demand, it takes a couple of minutes: mvn test -Dtest=ThreadModeLoadTests -Dgitminer.load=true
+ * (-Dgitminer.load.clients and -Dgitminer.load.seconds change the load). On a JVM without virtual
+ * threads both runs use the pool, only the connection limiter differs, and the second run is
+ * labelled as such.
+ */
+@EnabledIfSystemProperty(named = "gitminer.load", matches = "true")
+class ThreadModeLoadTests {
+
+    private static final int PROJECTS = 20;
+
+    @Test
+    void compareThreadModes() throws Exception {
+        int clients = Integer.getInteger("gitminer.load.clients", 400);
+        Duration duration = Duration.ofSeconds(Integer.getInteger("gitminer.load.seconds", 30));
+
+        // Like VirtualThreadConfiguration, which falls back to the pool before Java 21
+        String virtualLabel = Runtime.version().feature() >= 21
+                ? "virtual threads" : "platform threads with connection limiter";
+        List<LoadDriver.Result> results = new ArrayList<>();
+        for (boolean virtual : new boolean[]{false, true}) {
+            try (ConfigurableApplicationContext app = new SpringApplicationBuilder(GitMinerApplication.class)
+                    .properties("server.port=0",
+                            "spring.datasource.url=jdbc:h2:mem:load-" + virtual,
+                            "gitminer.threads.virtual=" + virtual)
+                    // Over this load the time budgets say little, and a failure would count as an error
+                    .run("--gitminer.sql.fail-over-budget=false")) {
+                URI base = URI.create("http://localhost:"
+                        + ((ServletWebServerApplicationContext) app).getWebServer().getPort() + "/");
+                seed(base);
+
+                LoadDriver driver = new LoadDriver();
+                // Warm up the JIT and the caches before measuring
+                driver.run("warm-up", clients, Duration.ofSeconds(5), () -> read(base));
+                results.add(driver.run(virtual ? virtualLabel : "platform threads", clients, duration,
+                        () -> read(base)));
+            }
+        }
+        results.forEach(System.out::println);
+        for (LoadDriver.Result result : results) {
+            assertEquals(0, result.errors(), result.name());
+        }
+    }
+
+    private static HttpRequest read(URI base) {
+        String project = "load-" + LoadDriver.any(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        return LoadDriver.get(base, LoadDriver.any(List.of(
+                "gitminer/projects/" + project,
+                "gitminer/projects?size=20",
+                "gitminer/issues?state=opened&size=20",
+                "gitminer/issues/" + project + "-issue-3/comments",
+                "gitminer/commits?authorName=author&size=20&page=5")));
+    }
+
+    private static void seed(URI base) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        for (int p = 0; p < PROJECTS; p++) {
+            String id = "load-" + p;
+            StringJoiner commits = new StringJoiner(",");
+            for (int i = 0; i < 100; i++) {
+                commits.add("{\"id\":\"" + id + "-commit-" + i + "\",\"title\":\"title\",\"author_name\":\"author\"," +
+                        "\"web_url\":\"url\",\"authored_date\":\"2023-01-01T00:00:00Z\"}");
+            }
+            StringJoiner issues = new StringJoiner(",");
+            for (int i = 0; i < 20; i++) {
+                StringJoiner comments = new StringJoiner(",");
+                for (int c = 0; c < 5; c++) {
+                    comments.add("{\"id\":\"" + id + "-comment-" + i + "-" + c + "\",\"body\":\"body " + id + " " + i
+                            + " " + c + "\",\"created_at\":\"2023-01-01T00:00:00Z\",\"author\":{\"username\":\"user-" + c + "\"}}");
+                }
+                issues.add("{\"id\":\"" + id + "-issue-" + i + "\",\"title\":\"issue\",\"state\":\"opened\"," +
+                        "\"created_at\":\"2023-01-01T00:00:00Z\",\"labels\":[\"bug\"],\"comments\":[" + comments + "]}");
+            }
+            String project = "{\"id\":\"" + id + "\",\"name\":\"" + id + "\",\"web_url\":\"https://example.com\"," +
+                    "\"commits\":[" + commits + "],\"issues\":[" + issues + "]}";
+            HttpResponse<Void> response = client.send(HttpRequest.newBuilder(base.resolve("gitminer/projects"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(project)).build(), HttpResponse.BodyHandlers.discarding());
+            assertEquals(201, response.statusCode(), id);
+        }
+    }
+}
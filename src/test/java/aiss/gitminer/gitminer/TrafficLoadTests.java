@@ -0,0 +1,226 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.GitMinerApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Synthetic miner and dashboard traffic against one instance, in three runs: miners only, readers
+ * only, and both at once. Miners post whole projects, each followed by a burst of comments;
+ * readers go through every list and detail endpoint, with filters and deep pages. Throughput,
+ * latency percentiles and error rates of each run are written as JSON so that runs can be diffed.
+ *
+ * Runs with the load profile: mvn -Pload test. -Dgitminer.load.readers, -Dgitminer.load.miners
+ * and -Dgitminer.load.seconds change the load, -Dgitminer.load.report where the JSON goes.
+ */
+@EnabledIfSystemProperty(named = "gitminer.load.traffic", matches = "true")
+class TrafficLoadTests {
+
+    private static final int PROJECTS = 20;
+    private static final int COMMITS = 500;
+    private static final int ISSUES = 50;
+    private static final int COMMENTS = 5;
+    private static final int COMMENT_BURST = 20;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final ThreadLocal<int[]> burst = ThreadLocal.withInitial(() -> new int[1]);
+    private final List<String> userIds = new ArrayList<>();
+
+    @Test
+    void minerAndReaderTraffic() throws Exception {
+        int readers = Integer.getInteger("gitminer.load.readers", 200);
+        int miners = Integer.getInteger("gitminer.load.miners", 8);
+        Duration duration = Duration.ofSeconds(Integer.getInteger("gitminer.load.seconds", 30));
+        File report = new File(System.getProperty("gitminer.load.report", "target/load-report.json"));
+
+        Instant started = Instant.now();
+        List<ObjectNode> runs = new ArrayList<>();
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(GitMinerApplication.class)
+                .properties("server.port=0", "spring.datasource.url=jdbc:h2:mem:traffic")
+                // Under load the time budgets say little, and a failure would count as an error
+                .run("--gitminer.sql.fail-over-budget=false")) {
+            URI base = URI.create("http://localhost:"
+                    + ((ServletWebServerApplicationContext) app).getWebServer().getPort() + "/");
+            seed(base, objectMapper);
+
+            LoadDriver driver = new LoadDriver();
+            // Warm up the JIT and the caches before measuring
+            driver.run("warm-up", readers, Duration.ofSeconds(5), () -> read(base));
+
+            runs.add(run("miners", driver.run("miners", miners, duration, () -> write(base))));
+            runs.add(run("readers", driver.run("readers", readers, duration, () -> read(base))));
+
+            CompletableFuture<LoadDriver.Result> mixedMiners = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return new LoadDriver().run("mixed miners", miners, duration, () -> write(base));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            LoadDriver.Result mixedReaders = driver.run("mixed readers", readers, duration, () -> read(base));
+            runs.add(run("mixed", mixedMiners.get(), mixedReaders));
+        }
+
+        ObjectNode json = objectMapper.createObjectNode();
+        json.put("started", started.toString());
+        json.putObject("load")
+                .put("readers", readers)
+                .put("miners", miners)
+                .put("seconds", duration.toSeconds())
+                .put("projects", PROJECTS)
+                .put("commits_per_project", COMMITS)
+                .put("issues_per_project", ISSUES)
+                .put("comments_per_issue", COMMENTS);
+        json.putArray("runs").addAll(runs);
+        report.getAbsoluteFile().getParentFile().mkdirs();
+        objectMapper.writeValue(report, json);
+        System.out.println("Load report written to " + report.getAbsolutePath());
+
+        for (ObjectNode run : runs) {
+            for (JsonNode traffic : run.get("traffic")) {
+                assertEquals(0, traffic.get("errors").asLong(), run.get("name").asText() + " " + traffic.get("name").asText());
+            }
+        }
+    }
+
+    private static ObjectNode run(String name, LoadDriver.Result... results) {
+        ObjectNode run = new ObjectMapper().createObjectNode().put("name", name);
+        ArrayNode traffic = run.putArray("traffic");
+        for (LoadDriver.Result result : results) {
+            System.out.println(result);
+            traffic.addObject()
+                    .put("name", result.name())
+                    .put("requests", result.requests())
+                    .put("errors", result.errors())
+                    .put("error_rate", result.errorRate())
+                    .put("seconds", result.seconds())
+                    .put("throughput", result.throughput())
+                    .put("p50_ms", result.p50Micros() / 1000.0)
+                    .put("p99_ms", result.p99Micros() / 1000.0)
+                    .put("p999_ms", result.p999Micros() / 1000.0);
+        }
+        return run;
+    }
+
+    // A new project, then a burst of comments, from each miner in turn
+    private HttpRequest write(URI base) {
+        int[] remaining = burst.get();
+        int n = sequence.incrementAndGet();
+        if (remaining[0] == 0) {
+            remaining[0] = COMMENT_BURST;
+            String id = "mined-" + n;
+            StringJoiner commits = new StringJoiner(",");
+            for (int i = 0; i < 50; i++) {
+                commits.add(commit(id + "-commit-" + i, "miner-" + (i % 5)));
+            }
+            StringJoiner issues = new StringJoiner(",");
+            for (int i = 0; i < 10; i++) {
+                StringJoiner comments = new StringJoiner(",");
+                for (int c = 0; c < 3; c++) {
+                    comments.add(comment(id + "-comment-" + i + "-" + c, "user-" + c));
+                }
+                issues.add(issue(id + "-issue-" + i, "[" + comments + "]"));
+            }
+            return post(base, "gitminer/projects", "{\"id\":\"" + id + "\",\"name\":\"" + id + "\"," +
+                    "\"web_url\":\"https://example.com\",\"commits\":[" + commits + "],\"issues\":[" + issues + "]}");
+        }
+        remaining[0]--;
+        return post(base, "gitminer/comments", comment("burst-comment-" + n, "user-" + (n % 10)));
+    }
+
+    private HttpRequest read(URI base) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String project = "traffic-" + random.nextInt(PROJECTS);
+        String issue = project + "-issue-" + random.nextInt(ISSUES);
+        return LoadDriver.get(base, LoadDriver.any(List.of(
+                "gitminer/projects?size=10&page=" + random.nextInt(2),
+                "gitminer/projects/" + project + "?expand=issues",
+                "gitminer/projects/" + project + "/commits?size=50&order=-authoredDate",
+                "gitminer/projects/" + project + "/issues?state=closed&size=20",
+                "gitminer/commits?size=50&page=" + random.nextInt(PROJECTS * COMMITS / 50),
+                "gitminer/commits?authorName=author-" + random.nextInt(10) + "&size=50&page=" + random.nextInt(20),
+                "gitminer/commits/" + project + "-commit-" + random.nextInt(COMMITS),
+                "gitminer/issues?state=opened&label=bug&size=20&page=" + random.nextInt(25),
+                "gitminer/issues?state=opened,closed&since=2023-01-01T00:00:00Z&size=20",
+                "gitminer/issues/" + issue,
+                "gitminer/issues/" + issue + "/comments",
+                "gitminer/comments?author=user-" + random.nextInt(COMMENTS) + "&size=20&page=" + random.nextInt(50),
+                "gitminer/comments/" + issue.replace("-issue-", "-comment-") + "-" + random.nextInt(COMMENTS),
+                "gitminer/users?size=20",
+                "gitminer/users/" + LoadDriver.any(userIds))));
+    }
+
+    private void seed(URI base, ObjectMapper objectMapper) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        for (int p = 0; p < PROJECTS; p++) {
+            String id = "traffic-" + p;
+            StringJoiner lines = new StringJoiner("\n");
+            lines.add("{\"type\":\"project\",\"id\":\"" + id + "\",\"name\":\"" + id + "\",\"web_url\":\"https://example.com\"}");
+            for (int i = 0; i < COMMITS; i++) {
+                lines.add("{\"type\":\"commit\"," + commit(id + "-commit-" + i, "author-" + (i % 10)).substring(1));
+            }
+            for (int i = 0; i < ISSUES; i++) {
+                lines.add("{\"type\":\"issue\"," + issue(id + "-issue-" + i, "[]").substring(1));
+                for (int c = 0; c < COMMENTS; c++) {
+                    lines.add("{\"type\":\"comment\",\"issue_id\":\"" + id + "-issue-" + i + "\","
+                            + comment(id + "-comment-" + i + "-" + c, "user-" + c).substring(1));
+                }
+            }
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(base.resolve("gitminer/projects/bulk"))
+                    .header("Content-Type", "application/x-ndjson")
+                    .POST(HttpRequest.BodyPublishers.ofString(lines.toString())).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(201, response.statusCode(), response.body());
+        }
+        HttpResponse<String> users = client.send(LoadDriver.get(base, "gitminer/users?size=100"),
+                HttpResponse.BodyHandlers.ofString());
+        objectMapper.readTree(users.body()).forEach(user -> userIds.add(user.get("id").asText()));
+    }
+
+    private static HttpRequest post(URI base, String path, String body) {
+        return HttpRequest.newBuilder(base.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private static String commit(String id, String author) {
+        return "{\"id\":\"" + id + "\",\"title\":\"title " + id + "\",\"message\":\"message\",\"author_name\":\"" + author
+                + "\",\"web_url\":\"url\",\"authored_date\":\"2023-01-01T00:00:00Z\"}";
+    }
+
+    private static String issue(String id, String comments) {
+        boolean closed = id.hashCode() % 2 == 0;
+        return "{\"id\":\"" + id + "\",\"title\":\"issue " + id + "\",\"state\":\"" + (closed ? "closed" : "opened")
+                + "\",\"created_at\":\"2023-01-01T00:00:00Z\"" + (closed ? ",\"closed_at\":\"2023-02-01T00:00:00Z\"" : "")
+                + ",\"labels\":[\"bug\"],\"author\":{\"username\":\"user-0\"},\"comments\":" + comments + "}";
+    }
+
+    private static String comment(String id, String author) {
+        return "{\"id\":\"" + id + "\",\"body\":\"body of " + id + "\",\"created_at\":\"2023-01-01T00:00:00Z\","
+                + "\"author\":{\"username\":\"" + author + "\"}}";
+    }
+}
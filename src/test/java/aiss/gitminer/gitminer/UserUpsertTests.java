@@ -0,0 +1,117 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.exception.UserConflictException;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.User;
+import aiss.gitminer.repository.UserRepository;
+import aiss.gitminer.service.UserIdentityMap;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Users are upserted by username, once per ingest, and an id already taken by another username is
+ * refused instead of failing the insert.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserUpsertTests {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Test
+    void usersAreUpsertedByUsername() throws Exception {
+        User ann = user("upsert-ann-id", "upsert-ann", "Ann");
+        Map<String, User> stored = userRepository.upsertAll(List.of(ann, user(null, "upsert-bob", "Bob"),
+                user("ignored-id", "upsert-ann", "Ann again"), user(null, null, "Nobody")));
+        assertEquals(2, stored.size());
+        assertEquals("upsert-ann-id", stored.get("upsert-ann").getId());
+        assertEquals("Ann", stored.get("upsert-ann").getName());
+        assertNotNull(stored.get("upsert-bob").getId());
+
+        // A known username keeps its id and only gets its profile refreshed
+        stored = userRepository.upsertAll(List.of(user("other-id", "upsert-ann", "Ann Smith")));
+        assertEquals("upsert-ann-id", stored.get("upsert-ann").getId());
+        assertEquals("Ann Smith", userRepository.findByUsername("upsert-ann").orElseThrow().getName());
+    }
+
+    @Test
+    void idsOfOtherUsersAreRefused() throws Exception {
+        userRepository.upsertAll(List.of(user("taken-id", "taken", "Taken")));
+
+        assertThrows(UserConflictException.class,
+                () -> userRepository.upsertAll(List.of(user("taken-id", "usurper", "Usurper"))));
+        assertThrows(UserConflictException.class,
+                () -> userRepository.upsertAll(List.of(user("twin-id", "twin-1", null), user("twin-id", "twin-2", null))));
+        assertTrue(userRepository.findByUsername("usurper").isEmpty());
+        assertTrue(userRepository.findByUsername("twin-1").isEmpty());
+
+        mockMvc.perform(post("/gitminer/users").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"taken-id\",\"username\":\"usurper\",\"name\":\"Usurper\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/gitminer/projects").contentType(MediaType.APPLICATION_JSON).content(
+                        "{\"id\":\"usurped\",\"name\":\"usurped\",\"web_url\":\"https://example.com\",\"commits\":[]," +
+                        "\"issues\":[{\"id\":\"usurped-issue\",\"title\":\"issue\",\"state\":\"opened\"," +
+                        "\"created_at\":\"2023-01-01T00:00:00Z\",\"author\":{\"id\":\"taken-id\",\"username\":\"usurper\"}}]}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/gitminer/projects/bulk").contentType("application/x-ndjson").content(
+                        "{\"type\":\"project\",\"id\":\"usurped\",\"name\":\"usurped\",\"web_url\":\"https://example.com\"}\n" +
+                        "{\"type\":\"user\",\"id\":\"taken-id\",\"username\":\"usurper\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/gitminer/projects/usurped")).andExpect(status().isNotFound());
+        assertEquals("taken", userRepository.findById("taken-id").orElseThrow().getUsername());
+    }
+
+    @Test
+    void identityMapSharesOneUserPerUsername() throws Exception {
+        List<Issue> issues = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Comment comment = new Comment("mapped-comment-" + i, "body", user(null, "mapped-ann", "Ann"),
+                    Instant.parse("2023-01-01T00:00:00Z"), null);
+            issues.add(new Issue("issue", null, "opened", Instant.parse("2023-01-01T00:00:00Z"), null, null,
+                    List.of(), user(null, "mapped-ann", "Ann"), user(null, "mapped-bob", "Bob"), 0,
+                    new ArrayList<>(List.of(comment))));
+        }
+        UserIdentityMap users = new UserIdentityMap(userRepository);
+        users.resolveIssues(issues);
+
+        User ann = issues.get(0).getAuthor();
+        assertNotNull(ann.getId());
+        for (Issue issue : issues) {
+            assertSame(ann, issue.getAuthor());
+            assertSame(ann, issue.getComments().get(0).getAuthor());
+            assertSame(issues.get(0).getAssignee(), issue.getAssignee());
+        }
+        // Later lookups of the same ingest reuse the resolved instance
+        assertSame(ann, users.resolve(user(null, "mapped-ann", "Ann")));
+        assertEquals(ann.getId(), userRepository.findByUsername("mapped-ann").orElseThrow().getId());
+    }
+
+    private static User user(String id, String username, String name) {
+        User user = new User(username, name, null, null);
+        user.setId(id);
+        return user;
+    }
+}